@@ -0,0 +1,82 @@
+package de.tjorven.pathfinder.gui.benchmark;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.gui.map.MapPathfinder;
+import de.tjorven.pathfinder.gui.gui.map.PerlinMap;
+import de.tjorven.pathfinder.gui.section.HeightField;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+// Seeded world shared by the benchmarks, section data goes to a throwaway directory
+public class BenchmarkWorld {
+    public static final long SEED = 0x5EEDL;
+    public static final int SEARCH_RADIUS = 1000;
+
+    private final File mapDirectory;
+    private final PerlinMap perlinMap;
+    private final SectionManager sectionManager;
+    private final MapPathfinder pathfinder;
+
+    public BenchmarkWorld() throws IOException {
+        mapDirectory = Files.createTempDirectory("path-finder-bench").toFile();
+        perlinMap = new PerlinMap(SEED);
+        sectionManager = new SectionManager(perlinMap, mapDirectory);
+        pathfinder = new MapPathfinder(sectionManager, SEARCH_RADIUS);
+    }
+
+    public PerlinMap getPerlinMap() {
+        return perlinMap;
+    }
+
+    public SectionManager getSectionManager() {
+        return sectionManager;
+    }
+
+    public MapPathfinder getPathfinder() {
+        return pathfinder;
+    }
+
+    public double heightAt(int x, int y) {
+        int size = SectionManager.SECTION_SIZE;
+        HeightField section = sectionManager.getSection(new Point(Math.floorDiv(x, size), Math.floorDiv(y, size)), perlinMap);
+        return section.get(Math.floorMod(x, size), Math.floorMod(y, size));
+    }
+
+    // Picks a reachable start/end pair with the given Manhattan distance, optionally forcing deep water onto the straight line between them
+    public Point[] findRoute(int distance, boolean acrossWater) {
+        Random random = new Random(SEED ^ distance ^ (acrossWater ? 1 : 0));
+        int limit = SEARCH_RADIUS * 2;
+
+        for (int attempt = 0; attempt < 10_000; attempt++) {
+            Point start = new Point(random.nextInt(limit), random.nextInt(limit));
+            int dx = random.nextInt(distance + 1);
+            Point end = new Point(start.x + dx, start.y + distance - dx);
+            if (end.x >= limit || end.y >= limit) continue;
+            if (heightAt(start.x, start.y) < 5 || heightAt(end.x, end.y) < 5) continue;
+            if (acrossWater && !crossesDeepWater(start, end)) continue;
+            if (pathfinder.findPath(start, end) == null) continue;
+            return new Point[]{start, end};
+        }
+
+        throw new IllegalStateException("No route of length " + distance + " found for seed " + SEED);
+    }
+
+    private boolean crossesDeepWater(Point start, Point end) {
+        int steps = Math.max(Math.abs(end.x - start.x), Math.abs(end.y - start.y));
+        for (int i = 0; i <= steps; i++) {
+            int x = start.x + (end.x - start.x) * i / steps;
+            int y = start.y + (end.y - start.y) * i / steps;
+            if (heightAt(x, y) < -20) return true;
+        }
+        return false;
+    }
+
+    public void close() {
+        sectionManager.delete();
+        mapDirectory.delete();
+    }
+}
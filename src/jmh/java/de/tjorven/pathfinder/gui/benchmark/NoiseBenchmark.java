@@ -0,0 +1,74 @@
+package de.tjorven.pathfinder.gui.benchmark;
+
+import de.tjorven.pathfinder.gui.PerlinNoise;
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.gui.map.PerlinMap;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+@State(Scope.Benchmark)
+public class NoiseBenchmark {
+    private static final int SAMPLES = 1024;
+
+    private PerlinNoise noise;
+    private PerlinMap perlinMap;
+    private final double[] xs = new double[SAMPLES];
+    private final double[] ys = new double[SAMPLES];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        noise = new PerlinNoise(BenchmarkWorld.SEED);
+        perlinMap = new PerlinMap(BenchmarkWorld.SEED);
+
+        Random random = new Random(BenchmarkWorld.SEED);
+        for (int i = 0; i < SAMPLES; i++) {
+            xs[i] = random.nextDouble() * 1000;
+            ys[i] = random.nextDouble() * 1000;
+        }
+    }
+
+    // One sample per operation batch, divide throughput by SAMPLES for single calls
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void noise(Blackhole blackhole) {
+        for (int i = 0; i < SAMPLES; i++) {
+            blackhole.consume(noise.noise(xs[i], ys[i]));
+        }
+    }
+
+    // One section tile by tile, the baseline for generateSection
+    @Benchmark
+    public void generateTilesForSection(Blackhole blackhole) {
+        for (int x = 0; x < SectionManager.SECTION_SIZE; x++) {
+            for (int y = 0; y < SectionManager.SECTION_SIZE; y++) {
+                blackhole.consume(perlinMap.generateTile(x, y));
+            }
+        }
+    }
+
+    // Raw noise for one section in one pass
+    @Benchmark
+    public double[][] generateTiles() {
+        double[][] section = new double[SectionManager.SECTION_SIZE][SectionManager.SECTION_SIZE];
+        perlinMap.generateTiles(0, 0, section);
+        return section;
+    }
+
+    // Same work as SectionManager.generateSection for one section, noise with halo, smoothing and region merging
+    @Benchmark
+    public double[][] generateSection() {
+        double[][] section = new double[SectionManager.SECTION_SIZE][SectionManager.SECTION_SIZE];
+        perlinMap.generateTerrain(0, 0, section);
+        return section;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 2)
+    @Measurement(iterations = 5)
+    public double[][] generateMap() {
+        return perlinMap.generateMap();
+    }
+}
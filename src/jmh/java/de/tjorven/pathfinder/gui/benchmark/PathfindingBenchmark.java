@@ -0,0 +1,50 @@
+package de.tjorven.pathfinder.gui.benchmark;
+
+import de.tjorven.pathfinder.gui.gui.map.MapPathfinder;
+import de.tjorven.pathfinder.gui.gui.map.search.Movement;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.io.IOException;
+import java.util.List;
+
+@State(Scope.Benchmark)
+public class PathfindingBenchmark {
+
+    @Param({"short", "long", "water"})
+    public String scenario;
+
+    @Param({"FOUR", "EIGHT"})
+    public Movement movement;
+
+    private BenchmarkWorld world;
+    private MapPathfinder pathfinder;
+    private Point start;
+    private Point end;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        world = new BenchmarkWorld();
+        pathfinder = world.getPathfinder();
+
+        Point[] route = switch (scenario) {
+            case "short" -> world.findRoute(60, false);
+            case "long" -> world.findRoute(1200, false);
+            case "water" -> world.findRoute(300, true);
+            default -> throw new IllegalArgumentException("Unknown scenario " + scenario);
+        };
+        start = route[0];
+        end = route[1];
+        pathfinder.setMovement(movement); // Routes are picked with 4-way moves, so both models get the same queries
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        world.close();
+    }
+
+    @Benchmark
+    public List<Point> findPath() {
+        return pathfinder.findPath(start, end);
+    }
+}
@@ -0,0 +1,70 @@
+package de.tjorven.pathfinder.gui.benchmark;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.gui.map.PerlinMap;
+import de.tjorven.pathfinder.gui.section.HeightField;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.io.IOException;
+
+@State(Scope.Benchmark)
+public class SectionIoBenchmark {
+    private static final int GRID = 8; // Sections per axis touched by the cache benchmarks
+
+    private BenchmarkWorld world;
+    private SectionManager sectionManager;
+    private PerlinMap perlinMap;
+    private HeightField sectionData;
+    private final Point sectionKey = new Point(3, 7);
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        world = new BenchmarkWorld();
+        sectionManager = world.getSectionManager();
+        perlinMap = world.getPerlinMap();
+
+        // Put every section on disk and in the cache
+        for (int x = 0; x < GRID; x++) {
+            for (int y = 0; y < GRID; y++) {
+                sectionManager.getSection(new Point(x, y), perlinMap);
+            }
+        }
+        sectionData = sectionManager.getSection(sectionKey, perlinMap);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        world.close();
+    }
+
+    @Benchmark
+    public void saveSection() {
+        sectionManager.saveSection(sectionKey, sectionData);
+    }
+
+    @Benchmark
+    public HeightField loadSection() {
+        return sectionManager.loadSection(sectionKey);
+    }
+
+    // Cache miss served from disk
+    @Benchmark
+    public HeightField getSectionCold() {
+        Point key = nextKey();
+        sectionManager.unloadSection(key);
+        return sectionManager.getSection(key, perlinMap);
+    }
+
+    // Cache hit
+    @Benchmark
+    public HeightField getSectionWarm() {
+        return sectionManager.getSection(nextKey(), perlinMap);
+    }
+
+    private Point nextKey() {
+        int index = next++ & (GRID * GRID - 1);
+        return new Point(index % GRID, index / GRID);
+    }
+}
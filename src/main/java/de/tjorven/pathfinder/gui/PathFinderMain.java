@@ -1,12 +1,25 @@
 package de.tjorven.pathfinder.gui;
 
 import de.tjorven.pathfinder.gui.gui.MapGui;
+import de.tjorven.pathfinder.gui.server.LoadGenerator;
+import de.tjorven.pathfinder.gui.server.ServerMain;
 
 import javax.swing.*;
+import java.util.Arrays;
 
 public class PathFinderMain {
 
-    public static void main(String[] args) {
+    // "server" and "loadgen" run headless with the remaining arguments, see ServerMain and LoadGenerator
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && args[0].equals("server")) {
+            ServerMain.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equals("loadgen")) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
         JFrame frame = new JFrame("PathFinder Visualization");
         frame.setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
 
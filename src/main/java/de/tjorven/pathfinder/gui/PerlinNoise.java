@@ -1,19 +1,20 @@
 package de.tjorven.pathfinder.gui;
 
-import java.security.SecureRandom;
+import java.util.SplittableRandom;
 
 public class PerlinNoise {
     private final int[] permutation;
 
-    public PerlinNoise(byte[] seed) {
+    // The permutation depends only on the seed, SplittableRandom is specified bit for bit on every JVM
+    public PerlinNoise(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
         permutation = new int[512];
-        SecureRandom random = new SecureRandom(seed);
         int[] p = new int[256];
         for (int i = 0; i < 256; i++) p[i] = i;
 
-        // Shuffle the permutation array
-        for (int i = 0; i < 256; i++) {
-            int j = random.nextInt(256);
+        // Fisher-Yates shuffle of the permutation array
+        for (int i = 255; i > 0; i--) {
+            int j = random.nextInt(i + 1);
             int temp = p[i];
             p[i] = p[j];
             p[j] = temp;
@@ -46,6 +47,50 @@ public class PerlinNoise {
         return (lerp(v, x1, x2) + 1) / 2; // Normalize to [0,1]
     }
 
+    // Adds weight * noise(xs[i], ys[j]) to out[i][j]. Floors, fades and offsets are computed once per column and
+    // row instead of per point, with the same floating point operations as noise so results are bit-identical.
+    public void noise(double[] xs, double[] ys, double weight, double[][] out) {
+        int rows = ys.length;
+        int[] yis = new int[rows];
+        double[] yfs = new double[rows];
+        double[] yfs1 = new double[rows]; // yf - 1
+        double[] vs = new double[rows];
+        for (int j = 0; j < rows; j++) {
+            double floor = Math.floor(ys[j]);
+            yis[j] = (int) floor & 255;
+            yfs[j] = ys[j] - floor;
+            yfs1[j] = yfs[j] - 1;
+            vs[j] = fade(yfs[j]);
+        }
+
+        for (int i = 0; i < xs.length; i++) {
+            double floor = Math.floor(xs[i]);
+            int xi = (int) floor & 255;
+            double xf = xs[i] - floor;
+            double xf1 = xf - 1;
+            double u = fade(xf);
+            int pa = permutation[xi];
+            int pb = permutation[xi + 1];
+            double[] column = out[i];
+
+            for (int j = 0; j < rows; j++) {
+                int yi = yis[j];
+                double yf = yfs[j];
+                double yf1 = yfs1[j];
+
+                int aa = permutation[pa + yi];
+                int ab = permutation[pa + yi + 1];
+                int ba = permutation[pb + yi];
+                int bb = permutation[pb + yi + 1];
+
+                double x1 = lerp(u, grad(aa, xf, yf), grad(ba, xf1, yf));
+                double x2 = lerp(u, grad(ab, xf, yf1), grad(bb, xf1, yf1));
+
+                column[j] += (lerp(vs[j], x1, x2) + 1) * 0.5 * weight; // Halving is exact, same as / 2
+            }
+        }
+    }
+
     private double fade(double t) {
         return t * t * t * (t * (t * 6 - 15) + 10);
     }
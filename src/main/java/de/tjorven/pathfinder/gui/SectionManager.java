@@ -1,85 +1,218 @@
 package de.tjorven.pathfinder.gui;
 
 import de.tjorven.pathfinder.gui.gui.map.PerlinMap;
+import de.tjorven.pathfinder.gui.section.AsyncSectionLoader;
+import de.tjorven.pathfinder.gui.section.HeightField;
+import de.tjorven.pathfinder.gui.section.HeightFormat;
+import de.tjorven.pathfinder.gui.section.LegacySectionStorage;
+import de.tjorven.pathfinder.gui.section.RegionSectionStorage;
+import de.tjorven.pathfinder.gui.section.SectionCache;
+import de.tjorven.pathfinder.gui.section.SectionPyramid;
+import de.tjorven.pathfinder.gui.section.SectionStorage;
+import de.tjorven.pathfinder.gui.section.StorageMetrics;
+import de.tjorven.pathfinder.gui.section.TransientSectionStorage;
 
 import java.awt.*;
-import java.io.*;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class SectionManager {
     public static final int SECTION_SIZE = 50; // Each section is 50x50 tiles
-    private final File mapDirectory = new File("map-data");
-    public final Map<Point, double[][]> sectionCache = new HashMap<>();
+    // Heap budget for cached sections, roughly 20 KB each
+    public static final long DEFAULT_CACHE_BYTES = Long.getLong("pathfinder.sectionCacheBytes", 128L * 1024 * 1024);
+    public static final File DEFAULT_MAP_DIRECTORY = new File("map-data");
+    // Regenerate evicted sections from the seed instead of writing them to DEFAULT_MAP_DIRECTORY
+    public static final boolean REGENERATE_SECTIONS = Boolean.getBoolean("pathfinder.regenerateSections");
+    private static final String SEED_FILE = "world.seed";
+    // FLOAT halves the memory of double sections, QUANTIZED quarters it with 16-bit fixed point heights
+    public static final HeightFormat HEIGHT_FORMAT = HeightFormat.valueOf(System.getProperty("pathfinder.heightFormat", "FLOAT").toUpperCase());
+    private final SectionStorage storage;
+    private final SectionCache sectionCache;
+    private final AsyncSectionLoader asyncLoader;
+    private final SectionPyramid pyramid; // Downsampled tiles for zoomed-out views
     private final PerlinMap perlinMap;
+    private final StorageMetrics storageMetrics = new StorageMetrics();
 
     public SectionManager(PerlinMap perlinMap) {
+        this(perlinMap, REGENERATE_SECTIONS ? new TransientSectionStorage() : diskStorage(DEFAULT_MAP_DIRECTORY));
+    }
+
+    // Region files, sections still stored in the old per-file layout are migrated when first loaded
+    public SectionManager(PerlinMap perlinMap, File mapDirectory) {
+        this(perlinMap, diskStorage(mapDirectory));
+    }
+
+    public SectionManager(PerlinMap perlinMap, SectionStorage storage) {
+        this(perlinMap, storage, DEFAULT_CACHE_BYTES);
+    }
+
+    public SectionManager(PerlinMap perlinMap, SectionStorage storage, long cacheBytes) {
         this.perlinMap = perlinMap; // Initialize the PerlinMap instance
-        if (!mapDirectory.exists()) {
-            mapDirectory.mkdirs();
-        }
+        this.storage = storage;
+        this.sectionCache = new SectionCache(cacheBytes);
+        int loaderThreads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1); // Leave a core for the EDT
+        this.asyncLoader = new AsyncSectionLoader(key -> getSection(key, perlinMap), loaderThreads);
+        this.pyramid = new SectionPyramid(SECTION_SIZE, storage, this::readSection);
     }
 
-    // Save a map section to a file
-    public void saveSection(Point sectionKey, double[][] sectionData) {
-        File sectionFile = new File(mapDirectory, sectionKey.x + "_" + sectionKey.y + ".dat");
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(sectionFile))) {
-            oos.writeObject(sectionData);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+    private static SectionStorage diskStorage(File mapDirectory) {
+        return new RegionSectionStorage(mapDirectory, new LegacySectionStorage(mapDirectory));
     }
 
-    // Load a map section from a file
-    public double[][] loadSection(Point sectionKey) {
-        File sectionFile = new File(mapDirectory, sectionKey.x + "_" + sectionKey.y + ".dat");
-        if (sectionFile.exists()) {
-            try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(sectionFile))) {
-                return (double[][]) ois.readObject();
-            } catch (IOException | ClassNotFoundException e) {
-                e.printStackTrace();
+    // Seed of the world saved in mapDirectory, a random one is written if there is none yet.
+    // Stored sections were generated from it, so keep using it as long as they exist. Sections found without a seed
+    // file come from an unknown seed (e.g. the legacy .dat files) and are deleted before a new seed is written,
+    // otherwise the world would mix terrain of two seeds. A seed file that cannot be read stops the program instead.
+    public static long loadOrCreateSeed(File mapDirectory) {
+        File seedFile = new File(mapDirectory, SEED_FILE);
+        if (seedFile.exists()) {
+            try {
+                return Long.parseLong(Files.readString(seedFile.toPath()).trim());
+            } catch (IOException | NumberFormatException e) {
+                throw new IllegalStateException("Cannot read the world seed from " + seedFile
+                        + ", fix the file or delete it to start a new world", e);
             }
         }
-        return null; // Return null if the section does not exist
+
+        SectionStorage stale = diskStorage(mapDirectory);
+        stale.deleteAll();
+        for (int level = 1; level <= SectionPyramid.MAX_LEVEL; level++) {
+            stale.levelStorage(level).deleteAll();
+        }
+        long seed = ThreadLocalRandom.current().nextLong();
+        try {
+            mapDirectory.mkdirs();
+            Files.writeString(seedFile.toPath(), Long.toString(seed));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot save the world seed to " + seedFile, e);
+        }
+        return seed;
+    }
+
+    // Save a map section to the storage backend
+    public void saveSection(Point sectionKey, HeightField sectionData) {
+        long start = System.nanoTime();
+        storage.save(sectionKey, sectionData);
+        storageMetrics.recordSave(System.nanoTime() - start);
+    }
+
+    // Load a map section from the storage backend
+    public HeightField loadSection(Point sectionKey) {
+        long start = System.nanoTime();
+        HeightField sectionData = storage.load(sectionKey); // Returns null if the section does not exist
+        storageMetrics.recordLoad(sectionData != null, System.nanoTime() - start);
+        return sectionData;
     }
 
     // Get a section from the cache or load it from file if not cached
-    public double[][] getSection(Point sectionKey, PerlinMap unused) {
-        if (!sectionCache.containsKey(sectionKey)) {
-            double[][] sectionData = loadSection(sectionKey);
-            if (sectionData == null) {
-                // Generate the section if it doesn't exist
-                sectionData = generateSection(sectionKey);
-                saveSection(sectionKey, sectionData);
-            }
-            sectionCache.put(sectionKey, sectionData);
+    public HeightField getSection(Point sectionKey, PerlinMap unused) {
+        return sectionCache.get(sectionKey, this::loadOrGenerate);
+    }
+
+    // Like getSection but does not add the section to the cache, for bulk reads such as building the pyramid
+    public HeightField readSection(Point sectionKey) {
+        return sectionCache.read(sectionKey, this::loadOrGenerate);
+    }
+
+    private HeightField loadOrGenerate(Point sectionKey) {
+        HeightField sectionData = loadSection(sectionKey);
+        if (sectionData == null) {
+            // Generate the section if it doesn't exist
+            sectionData = generateSection(sectionKey);
+            saveSection(sectionKey, sectionData);
+        }
+        return sectionData;
+    }
+
+    // Returns the cached section without loading it, or null
+    public HeightField getSectionIfCached(Point sectionKey) {
+        return sectionCache.getIfPresent(sectionKey);
+    }
+
+    // Load or generate a section on a worker thread, concurrent requests for the same section share the result
+    public CompletableFuture<HeightField> getSectionAsync(Point sectionKey, AsyncSectionLoader.Priority priority) {
+        return getSectionAsync(sectionKey, priority, System.nanoTime());
+    }
+
+    // Same with a System.nanoTime() deadline, requests of the same priority are loaded earliest deadline first
+    public CompletableFuture<HeightField> getSectionAsync(Point sectionKey, AsyncSectionLoader.Priority priority, long deadlineNanos) {
+        HeightField cached = sectionCache.getIfPresent(sectionKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
         }
-        return sectionCache.get(sectionKey);
+        return asyncLoader.request(sectionKey, priority, deadlineNanos);
+    }
+
+    // Drops queued prefetches of sections that are no longer wanted
+    public void cancelPrefetches(Predicate<Point> unwanted) {
+        asyncLoader.cancelPrefetches(unwanted);
+    }
+
+    // Notified on a worker thread whenever an asynchronously requested section is ready
+    public void setSectionLoadListener(Consumer<Point> listener) {
+        asyncLoader.setListener(listener);
+    }
+
+    // Stores new data for a section, e.g. after a local terrain edit, and drops the cached copy.
+    // Pathfinders that searched the old terrain need MapPathfinder.onSectionChanged.
+    public void replaceSection(Point sectionKey, HeightField sectionData) {
+        saveSection(sectionKey, sectionData);
+        sectionCache.invalidate(sectionKey);
+        pyramid.invalidateSection(sectionKey);
     }
 
     // Remove a section from the cache
     public void unloadSection(Point sectionKey) {
-        sectionCache.remove(sectionKey);
+        sectionCache.invalidate(sectionKey);
     }
 
-    // Generate a new map section using Perlin noise
-    private double[][] generateSection(Point sectionKey) {
-        double[][] section = new double[SECTION_SIZE][SECTION_SIZE];
-        int startX = sectionKey.x * SECTION_SIZE;
-        int startY = sectionKey.y * SECTION_SIZE;
+    public void clearCache() {
+        asyncLoader.cancelPending();
+        sectionCache.invalidateAll();
+        pyramid.clearCache();
+    }
 
-        for (int x = 0; x < SECTION_SIZE; x++) {
-            for (int y = 0; y < SECTION_SIZE; y++) {
-                section[x][y] = perlinMap.generateTile(startX + x, startY + y);
-            }
-        }
+    // Keep the sections in this area (section coordinates) cached, e.g. the visible viewport
+    public void pinSections(Rectangle sectionArea) {
+        sectionCache.pin(sectionArea);
+    }
+
+    public Set<Point> getCachedSections() {
+        return sectionCache.keys();
+    }
 
-        return section;
+    public SectionCache getSectionCache() {
+        return sectionCache;
+    }
+
+    public SectionPyramid getPyramid() {
+        return pyramid;
+    }
+
+    // Storage and generation counters, cache hits and misses are kept by getSectionCache()
+    public StorageMetrics getStorageMetrics() {
+        return storageMetrics;
+    }
+
+    // Generate a new map section using Perlin noise
+    private HeightField generateSection(Point sectionKey) {
+        long start = System.nanoTime();
+        double[][] section = new double[SECTION_SIZE][SECTION_SIZE];
+        perlinMap.generateTerrain(sectionKey.x * SECTION_SIZE, sectionKey.y * SECTION_SIZE, section);
+        HeightField sectionData = HEIGHT_FORMAT.encode(section);
+        storageMetrics.recordGeneration(System.nanoTime() - start);
+        return sectionData;
     }
 
     public void delete() {
-        for (File file : mapDirectory.listFiles()) {
-            file.delete();
-        }
+        storage.deleteAll();
+        pyramid.deleteAll();
     }
 }
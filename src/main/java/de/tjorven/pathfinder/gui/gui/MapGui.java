@@ -2,21 +2,45 @@ package de.tjorven.pathfinder.gui.gui;
 
 import de.tjorven.pathfinder.gui.SectionManager;
 import de.tjorven.pathfinder.gui.gui.map.MapPathfinder;
+import de.tjorven.pathfinder.gui.gui.map.PathfinderMetrics;
 import de.tjorven.pathfinder.gui.gui.map.PerlinMap;
+import de.tjorven.pathfinder.gui.gui.map.search.LandmarkHeuristic;
+import de.tjorven.pathfinder.gui.gui.map.search.Movement;
+import de.tjorven.pathfinder.gui.gui.map.search.NodeTable;
+import de.tjorven.pathfinder.gui.gui.map.search.SearchMode;
+import de.tjorven.pathfinder.gui.section.SectionCache;
+import de.tjorven.pathfinder.gui.section.SectionPyramid;
+import de.tjorven.pathfinder.gui.section.StorageMetrics;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.List;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Set;
 
 public class MapGui extends JPanel implements Scrollable {
     private static final int INITIAL_PIXEL_SIZE = 5;
     private static final int MIN_PIXEL_SIZE = 1;
     private static final int MAX_PIXEL_SIZE = 50;
+    private static final int MIN_MARKER_PIXELS = 3;
+    private static final Color PLACEHOLDER_COLOR = Color.LIGHT_GRAY; // Drawn while a section is still loading
+    private static final int LANDMARK_COUNT = 4;
+    private static final File LANDMARK_FILE = new File(SectionManager.DEFAULT_MAP_DIRECTORY, "landmarks.bin");
+    private static final int EXPLORED_RGB = 0x80FFD700; // Translucent yellow over expanded tiles
+    private static final Color DEBUG_BACKGROUND = new Color(0, 0, 0, 160);
     private final SectionManager sectionManager;
     private final PerlinMap perlinMap;
     private final MapPathfinder mapPathfinder;
-    private final int visibleBuffer = 2; // Number of extra sections to load around the visible area
+    private final ViewportRenderer viewportRenderer; // Terrain tiles, rendered off the event dispatch thread
+    private final PathRenderer pathRenderer = new PathRenderer();
+    private final PrefetchScheduler prefetchScheduler; // Loads and pins the cells around the viewport
     private int pixelSize = INITIAL_PIXEL_SIZE;
+    private int zoomOut; // Pyramid level shown below one pixel per tile, every level halves the scale again
+    private volatile SwingWorker<LandmarkHeuristic, Void> landmarkWorker; // Running landmark build, if any
+    private boolean debugOverlay;
+    private BufferedImage exploredImage; // One pixel per tile of the last search's expanded area, debug overlay only
+    private Point exploredOrigin; // Tile at the top left corner of exploredImage
+    private long lastPaintNanos; // Debug overlay only
 
     public MapGui(JFrame frame) {
         JScrollPane scrollPane = new JScrollPane(this);
@@ -27,9 +51,16 @@ public class MapGui extends JPanel implements Scrollable {
 
         frame.add(scrollPane, BorderLayout.CENTER);
 
-        perlinMap = new PerlinMap();
+        perlinMap = new PerlinMap(SectionManager.loadOrCreateSeed(SectionManager.DEFAULT_MAP_DIRECTORY));
         sectionManager = new SectionManager(perlinMap); // Pass PerlinMap instance to SectionManager
         mapPathfinder = new MapPathfinder(sectionManager, 1000); // Initialize pathfinder with section manager
+        viewportRenderer = new ViewportRenderer(sectionManager, this, PLACEHOLDER_COLOR);
+        sectionManager.setSectionLoadListener(sectionKey -> {
+            mapPathfinder.onSectionLoaded(sectionKey);
+            viewportRenderer.cellLoaded(0, sectionKey);
+        });
+        sectionManager.getPyramid().setTileLoadListener(viewportRenderer::cellLoaded);
+        prefetchScheduler = new PrefetchScheduler(sectionManager, MIN_PIXEL_SIZE);
 
         // Set initial preferred size
         this.setPreferredSize(new Dimension(2000, 1000));
@@ -44,11 +75,20 @@ public class MapGui extends JPanel implements Scrollable {
                 int scrollAmount = e.getUnitsToScroll() * horizontalScrollBar.getUnitIncrement();
                 horizontalScrollBar.setValue(horizontalScrollBar.getValue() + scrollAmount);
             } else if (e.isControlDown() && !e.isShiftDown()) {
+                // Below MIN_PIXEL_SIZE the view switches to ever coarser pyramid levels
                 int rotation = e.getWheelRotation();
-                if (rotation < 0 && pixelSize < MAX_PIXEL_SIZE) {
-                    pixelSize++;
-                } else if (rotation > 0 && pixelSize > MIN_PIXEL_SIZE) {
-                    pixelSize--;
+                if (rotation < 0) {
+                    if (zoomOut > 0) {
+                        zoomOut--;
+                    } else if (pixelSize < MAX_PIXEL_SIZE) {
+                        pixelSize++;
+                    }
+                } else if (rotation > 0) {
+                    if (pixelSize > MIN_PIXEL_SIZE) {
+                        pixelSize--;
+                    } else if (zoomOut < SectionPyramid.MAX_LEVEL) {
+                        zoomOut++;
+                    }
                 }
                 updatePreferredSize();
                 revalidate();
@@ -64,21 +104,25 @@ public class MapGui extends JPanel implements Scrollable {
 
         // Generate random valid start and end points for the pathfinder
         mapPathfinder.generateRandomStartAndEndPoints();
+        buildConnectivity();
     }
 
     private void updatePreferredSize() {
-        int totalSectionsX = sectionManager.sectionCache.keySet().stream()
+        Set<Point> cachedSections = sectionManager.getCachedSections();
+        int totalSectionsX = cachedSections.stream()
                 .mapToInt(value -> value.x)
                 .max()
                 .orElse(0) + 1;
 
-        int totalSectionsY = sectionManager.sectionCache.keySet().stream()
+        int totalSectionsY = cachedSections.stream()
                 .mapToInt(value -> value.y)
                 .max()
                 .orElse(0) + 1;
 
-        int width = totalSectionsX * SectionManager.SECTION_SIZE * pixelSize;
-        int height = totalSectionsY * SectionManager.SECTION_SIZE * pixelSize;
+        // Zoomed out, the view fills at least the viewport so that more of the world comes into sight
+        Dimension viewport = getParent() != null ? getParent().getSize() : new Dimension();
+        int width = Math.max(toPixels((long) totalSectionsX * SectionManager.SECTION_SIZE), viewport.width);
+        int height = Math.max(toPixels((long) totalSectionsY * SectionManager.SECTION_SIZE), viewport.height);
 
         setPreferredSize(new Dimension(width, height));
     }
@@ -87,21 +131,7 @@ public class MapGui extends JPanel implements Scrollable {
         scrollPane.getViewport().addChangeListener(e -> {
             Rectangle viewRect = scrollPane.getViewport().getViewRect();
 
-            int startX = (int) Math.floor(viewRect.x / (double) (SectionManager.SECTION_SIZE * pixelSize)) - visibleBuffer;
-            int startY = (int) Math.floor(viewRect.y / (double) (SectionManager.SECTION_SIZE * pixelSize)) - visibleBuffer;
-            int endX = (int) Math.ceil((viewRect.x + viewRect.width) / (double) (SectionManager.SECTION_SIZE * pixelSize)) + visibleBuffer;
-            int endY = (int) Math.ceil((viewRect.y + viewRect.height) / (double) (SectionManager.SECTION_SIZE * pixelSize)) + visibleBuffer;
-
-            for (int x = startX; x <= endX; x++) {
-                for (int y = startY; y <= endY; y++) {
-                    sectionManager.getSection(new Point(x, y), perlinMap);
-                }
-            }
-
-            sectionManager.sectionCache.keySet().removeIf(key ->
-                    key.x < startX || key.x > endX || key.y < startY || key.y > endY
-            );
-
+            prefetchScheduler.viewportChanged(viewRect, pixelSize, zoomOut);
             repaint();
         });
     }
@@ -111,79 +141,200 @@ public class MapGui extends JPanel implements Scrollable {
         JButton simulateButton = new JButton("Resimulate");
         simulateButton.addActionListener(event -> {
             sectionManager.delete();
-            sectionManager.sectionCache.clear();
+            sectionManager.clearCache();
+            viewportRenderer.invalidateAll();
+            mapPathfinder.onTerrainChanged();
+            landmarkWorker = null; // A build still running works on the old terrain
+            LANDMARK_FILE.delete();
+            exploredImage = null;
             mapPathfinder.generateRandomStartAndEndPoints();
+            buildConnectivity();
             repaint();
         });
 
+        // A* uses the landmark heuristic once the tables are ready
+        JButton landmarkButton = new JButton("Build Landmarks");
+        landmarkButton.addActionListener(event -> buildLandmarks(landmarkButton));
+
         JButton findPathButton = new JButton("Find Path");
         findPathButton.addActionListener(event -> {
             mapPathfinder.findPath();
+            updateExploredImage();
+            repaint();
+        });
+
+        // Shows the expanded tiles and search, cache and storage counters
+        JCheckBox debugBox = new JCheckBox("Debug");
+        debugBox.addActionListener(event -> {
+            debugOverlay = debugBox.isSelected();
+            mapPathfinder.setDetailedMetrics(debugOverlay);
+            updateExploredImage();
             repaint();
         });
 
+        // Straightens paths along lines of sight that cost no more than the searched tiles
+        JCheckBox smoothBox = new JCheckBox("Smooth", mapPathfinder.isSmoothPaths());
+        smoothBox.addActionListener(event -> mapPathfinder.setSmoothPaths(smoothBox.isSelected()));
+
+        JComboBox<SearchMode> searchModeBox = new JComboBox<>(SearchMode.values());
+        searchModeBox.setSelectedItem(mapPathfinder.getSearchMode());
+        searchModeBox.addActionListener(event -> mapPathfinder.setSearchMode((SearchMode) searchModeBox.getSelectedItem()));
+
+        JComboBox<Movement> movementBox = new JComboBox<>(Movement.values());
+        movementBox.setSelectedItem(mapPathfinder.getMovement());
+        movementBox.addActionListener(event -> mapPathfinder.setMovement((Movement) movementBox.getSelectedItem()));
+
         interaction.add(simulateButton);
         interaction.add(findPathButton);
+        interaction.add(searchModeBox);
+        interaction.add(movementBox);
+        interaction.add(smoothBox);
+        interaction.add(landmarkButton);
+        interaction.add(debugBox);
         return interaction;
     }
 
+    private void buildLandmarks(JButton button) {
+        button.setEnabled(false);
+        SwingWorker<LandmarkHeuristic, Void> worker = new SwingWorker<>() {
+            @Override
+            protected LandmarkHeuristic doInBackground() {
+                boolean cached = LANDMARK_FILE.exists();
+                LandmarkHeuristic table = mapPathfinder.buildLandmarks(LANDMARK_COUNT, LANDMARK_FILE);
+                if (!cached && landmarkWorker == this) {
+                    LANDMARK_FILE.getParentFile().mkdirs();
+                    table.save(LANDMARK_FILE);
+                }
+                return table;
+            }
+
+            @Override
+            protected void done() {
+                button.setEnabled(true);
+                if (landmarkWorker != this) return;
+                landmarkWorker = null;
+                try {
+                    mapPathfinder.setLandmarks(get());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        landmarkWorker = worker;
+        worker.execute();
+    }
+
+    // Indexes the whole search window in the background, afterwards queries between unconnected areas fail at once
+    private void buildConnectivity() {
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                mapPathfinder.buildConnectivity();
+                return null;
+            }
+        }.execute();
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
+        long paintStart = System.nanoTime();
         super.paintComponent(g);
 
         Rectangle viewRect = ((JScrollPane) getParent().getParent()).getViewport().getViewRect();
 
-        int startX = (int) Math.floor(viewRect.x / (double) (SectionManager.SECTION_SIZE * pixelSize));
-        int startY = (int) Math.floor(viewRect.y / (double) (SectionManager.SECTION_SIZE * pixelSize));
-        int endX = (int) Math.ceil((viewRect.x + viewRect.width) / (double) (SectionManager.SECTION_SIZE * pixelSize));
-        int endY = (int) Math.ceil((viewRect.y + viewRect.height) / (double) (SectionManager.SECTION_SIZE * pixelSize));
-
-        for (int sx = startX; sx <= endX; sx++) {
-            for (int sy = startY; sy <= endY; sy++) {
-                double[][] section = sectionManager.getSection(new Point(sx, sy), perlinMap);
-                if (section != null) {
-                    drawSection(g, section, sx, sy);
-                }
-            }
-        }
+        // Zoomed out, a cell is a pyramid tile drawn at the same size a section has at MIN_PIXEL_SIZE
+        viewportRenderer.paint(g, viewRect, pixelSize, zoomOut);
 
+        // Markers and the path keep a visible size when zoomed out
+        int markerPixels = Math.max(toPixels(5), MIN_MARKER_PIXELS);
         Point startPoint = mapPathfinder.getStartPoint();
         Point endPoint = mapPathfinder.getEndPoint();
         if (startPoint != null) {
             g.setColor(Color.GREEN);
-            g.fillRect(startPoint.x * pixelSize, startPoint.y * pixelSize, pixelSize * 5, pixelSize * 5);
+            g.fillRect(toPixels(startPoint.x), toPixels(startPoint.y), markerPixels, markerPixels);
         }
         if (endPoint != null) {
             g.setColor(Color.RED);
-            g.fillRect(endPoint.x * pixelSize, endPoint.y * pixelSize, pixelSize * 5, pixelSize * 5);
+            g.fillRect(toPixels(endPoint.x), toPixels(endPoint.y), markerPixels, markerPixels);
         }
 
-        List<Point> path = mapPathfinder.getPath();
-        if (path != null) {
-            g.setColor(Color.MAGENTA);
-            for (Point point : path) {
-                g.fillRect(point.x * pixelSize, point.y * pixelSize, pixelSize * 5, pixelSize * 5);
-            }
+        if (debugOverlay && exploredImage != null) {
+            g.drawImage(exploredImage, toPixels(exploredOrigin.x), toPixels(exploredOrigin.y),
+                    toPixels(exploredImage.getWidth()), toPixels(exploredImage.getHeight()), null);
         }
+
+        pathRenderer.draw(g, mapPathfinder.getWaypoints(), pixelSize / (double) (1 << zoomOut), markerPixels, Color.MAGENTA);
+
+        if (debugOverlay) {
+            drawDebugCounters(g, viewRect);
+        }
+        lastPaintNanos = System.nanoTime() - paintStart;
     }
 
-    private void drawSection(Graphics g, double[][] section, int sectionX, int sectionY) {
-        for (int x = 0; x < SectionManager.SECTION_SIZE; x++) {
-            for (int y = 0; y < SectionManager.SECTION_SIZE; y++) {
-                int globalX = sectionX * SectionManager.SECTION_SIZE + x;
-                int globalY = sectionY * SectionManager.SECTION_SIZE + y;
-                g.setColor(getBiomeColor(section[x][y]));
-                g.fillRect(globalX * pixelSize, globalY * pixelSize, pixelSize, pixelSize);
-            }
+    // Rasterises the tiles expanded by the last search into an image covering their bounding box
+    private void updateExploredImage() {
+        long[] explored = debugOverlay ? mapPathfinder.getExploredNodes() : null;
+        if (explored == null || explored.length == 0) {
+            exploredImage = null;
+            return;
+        }
+
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (long key : explored) {
+            int x = NodeTable.unpackX(key);
+            int y = NodeTable.unpackY(key);
+            minX = Math.min(minX, x);
+            minY = Math.min(minY, y);
+            maxX = Math.max(maxX, x);
+            maxY = Math.max(maxY, y);
+        }
+        BufferedImage image = new BufferedImage(maxX - minX + 1, maxY - minY + 1, BufferedImage.TYPE_INT_ARGB);
+        for (long key : explored) {
+            image.setRGB(NodeTable.unpackX(key) - minX, NodeTable.unpackY(key) - minY, EXPLORED_RGB);
+        }
+        exploredImage = image;
+        exploredOrigin = new Point(minX, minY);
+    }
+
+    private void drawDebugCounters(Graphics g, Rectangle viewRect) {
+        PathfinderMetrics search = mapPathfinder.getMetrics();
+        SectionCache cache = sectionManager.getSectionCache();
+        StorageMetrics storage = sectionManager.getStorageMetrics();
+        String[] lines = {
+                String.format("%s: %s, expanded %d, reopened %d, peak open %d", search.getLastMode(),
+                        search.isLastFound() ? "found" : "no path", search.getLastExpandedNodes(),
+                        search.getLastReopenedNodes(), search.getLastPeakOpenSetSize()),
+                String.format("search %.1f ms, height lookups %.1f ms",
+                        search.getLastSearchNanos() / 1e6, search.getLastHeightLookupNanos() / 1e6),
+                String.format("cache: %d sections, %d hits, %d misses, %d evictions",
+                        cache.size(), cache.getHitCount(), cache.getMissCount(), cache.getEvictionCount()),
+                String.format("storage: %d loads (%.2f ms total), %d saves (%.2f ms), %d generated (%.2f ms)",
+                        storage.getDiskLoadCount(), storage.getTotalDiskLoadNanos() / 1e6,
+                        storage.getDiskSaveCount(), storage.getTotalDiskSaveNanos() / 1e6,
+                        storage.getGenerationCount(), storage.getTotalGenerationNanos() / 1e6),
+                String.format("view: %d tiles queued, %d rendered, last paint %.2f ms",
+                        viewportRenderer.getQueuedTileCount(), viewportRenderer.getRenderedTileCount(), lastPaintNanos / 1e6)
+        };
+
+        FontMetrics fontMetrics = g.getFontMetrics();
+        int lineHeight = fontMetrics.getHeight();
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, fontMetrics.stringWidth(line));
+        }
+        int x = viewRect.x + 8;
+        int y = viewRect.y + 8;
+        g.setColor(DEBUG_BACKGROUND);
+        g.fillRect(x, y, width + 12, lines.length * lineHeight + 8);
+        g.setColor(Color.WHITE);
+        for (int i = 0; i < lines.length; i++) {
+            g.drawString(lines[i], x + 6, y + 4 + fontMetrics.getAscent() + i * lineHeight);
         }
     }
 
-    private Color getBiomeColor(double height) {
-        if (height > 60) return Color.GRAY;
-        if (height > 25) return new Color(34, 139, 34);
-        if (height > 5) return new Color(237, 201, 175);
-        if (height > -20) return new Color(0, 0, 255);
-        return new Color(0, 0, 139);
+    // Screen pixels of a distance in tiles at the current zoom
+    private int toPixels(long tiles) {
+        return (int) ((tiles * pixelSize) >> zoomOut);
     }
 
     @Override
@@ -0,0 +1,50 @@
+package de.tjorven.pathfinder.gui.gui;
+
+import de.tjorven.pathfinder.gui.gui.map.search.NodeTable;
+
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+// Draws a path as a single polyline through its waypoints instead of one rectangle per tile.
+// The shape is built once per waypoint array and zoom level and reused by every repaint.
+public class PathRenderer {
+    private long[] waypoints; // Those the cached shape was built from, compared by identity
+    private double scale;
+    private int width;
+    private Path2D shape;
+    private Stroke stroke;
+
+    // Waypoints are packed keys (see NodeTable.pack) and scale is in pixels per tile. The line is width pixels
+    // wide and centred like the markers drawn from a tile's top left corner.
+    public void draw(Graphics g, long[] waypoints, double scale, int width, Color color) {
+        if (waypoints == null || waypoints.length == 0) return;
+        if (waypoints != this.waypoints || scale != this.scale || width != this.width) {
+            build(waypoints, scale, width);
+        }
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            g2.setColor(color);
+            g2.setStroke(stroke);
+            g2.draw(shape);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private void build(long[] waypoints, double scale, int width) {
+        double offset = width / 2.0;
+        Path2D.Float polyline = new Path2D.Float(Path2D.WIND_NON_ZERO, waypoints.length);
+        polyline.moveTo(NodeTable.unpackX(waypoints[0]) * scale + offset, NodeTable.unpackY(waypoints[0]) * scale + offset);
+        for (int i = 1; i < waypoints.length; i++) {
+            polyline.lineTo(NodeTable.unpackX(waypoints[i]) * scale + offset, NodeTable.unpackY(waypoints[i]) * scale + offset);
+        }
+        if (waypoints.length == 1) polyline.closePath(); // Single tile, the square cap draws it
+
+        this.waypoints = waypoints;
+        this.scale = scale;
+        this.width = width;
+        this.shape = polyline;
+        this.stroke = new BasicStroke(width, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_ROUND);
+    }
+}
@@ -0,0 +1,223 @@
+package de.tjorven.pathfinder.gui.gui;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.section.AsyncSectionLoader.Priority;
+import de.tjorven.pathfinder.gui.section.SectionPyramid;
+
+import java.awt.*;
+
+// Decides which grid cells (sections, or pyramid tiles when zoomed out) to load and keep around the viewport.
+// The scroll velocity, smoothed over the last viewport events, stretches the prefetched area in the direction
+// of motion, and every prefetch gets the time at which the view is expected to reach it as its deadline.
+// While the user keeps zooming, the cells of the next zoom step are requested ahead as well.
+// Pinning uses hysteresis: cells stay pinned until they are OUTER_MARGIN cells out of view, so panning back
+// and forth does not evict and reload the same sections. Only used on the event dispatch thread.
+public class PrefetchScheduler {
+    private static final int INNER_MARGIN = 1; // Cells loaded around the view in every direction
+    private static final int OUTER_MARGIN = 4; // Pinned cells are released once they are this far out of view
+    private static final double LOOKAHEAD_SECONDS = 0.75; // How far ahead of the motion cells are prefetched
+    private static final int MAX_LOOKAHEAD_CELLS = 8;
+    private static final double SMOOTHING = 0.5; // Weight of the newest sample in the velocity average
+    private static final long IDLE_NANOS = 250_000_000; // A longer pause between events resets the velocity
+    private static final long ZOOM_WINDOW_NANOS = 500_000_000; // How long a zoom step predicts the next one
+    private static final long RING_NANOS_PER_CELL = 1_000_000_000; // Deadline of cells the view is not moving to
+    private static final long ZOOM_DEADLINE_NANOS = 100_000_000;
+
+    private final SectionManager sectionManager;
+    private final int minPixelSize; // Below it the view switches to the next pyramid level
+    private double velocityX; // View centre, tiles per second
+    private double velocityY;
+    private double lastCenterX = Double.NaN; // Tiles
+    private double lastCenterY;
+    private long lastEventNanos;
+    private int lastPixelSize;
+    private int lastLevel = -1;
+    private int zoomDirection; // -1 zooming out, 1 zooming in, 0 none lately
+    private long lastZoomNanos;
+    private Rectangle pinned; // Cells of lastLevel
+
+    public PrefetchScheduler(SectionManager sectionManager, int minPixelSize) {
+        this.sectionManager = sectionManager;
+        this.minPixelSize = minPixelSize;
+    }
+
+    public void viewportChanged(Rectangle viewRect, int pixelSize, int level) {
+        viewportChanged(viewRect, pixelSize, level, System.nanoTime());
+    }
+
+    public void viewportChanged(Rectangle viewRect, int pixelSize, int level, long nowNanos) {
+        double tilesPerPixel = (double) (1 << level) / pixelSize;
+        double centerX = viewRect.getCenterX() * tilesPerPixel;
+        double centerY = viewRect.getCenterY() * tilesPerPixel;
+        boolean zoomed = level != lastLevel || pixelSize != lastPixelSize;
+        if (zoomed) {
+            if (lastLevel >= 0) {
+                double lastScale = lastPixelSize / (double) (1 << lastLevel);
+                zoomDirection = pixelSize / (double) (1 << level) < lastScale ? -1 : 1;
+                lastZoomNanos = nowNanos;
+            }
+        } else {
+            updateVelocity(centerX, centerY, nowNanos);
+        }
+        lastCenterX = centerX;
+        lastCenterY = centerY;
+        lastEventNanos = nowNanos;
+
+        int cellPixels = SectionManager.SECTION_SIZE * pixelSize;
+        Rectangle visible = cellsOf(viewRect, cellPixels);
+        double cellTiles = SectionManager.SECTION_SIZE << level;
+        double cellsPerSecondX = velocityX / cellTiles;
+        double cellsPerSecondY = velocityY / cellTiles;
+
+        // The view now, widened by the margin and stretched to where it will be after the lookahead
+        Rectangle wanted = grow(visible, INNER_MARGIN);
+        Rectangle ahead = new Rectangle(visible);
+        ahead.translate(clampCells(cellsPerSecondX * LOOKAHEAD_SECONDS), clampCells(cellsPerSecondY * LOOKAHEAD_SECONDS));
+        wanted.add(grow(ahead, INNER_MARGIN));
+
+        for (int x = wanted.x; x < wanted.x + wanted.width; x++) {
+            for (int y = wanted.y; y < wanted.y + wanted.height; y++) {
+                Point key = new Point(x, y);
+                if (visible.contains(key)) {
+                    request(level, key, Priority.VISIBLE, nowNanos);
+                } else {
+                    request(level, key, Priority.PREFETCH, nowNanos + arrivalNanos(visible, key, cellsPerSecondX, cellsPerSecondY));
+                }
+            }
+        }
+
+        // Queued prefetches the view moved away from would only delay the ones ahead of it
+        Rectangle outer = grow(visible, OUTER_MARGIN);
+        outer.add(wanted);
+        cancelPrefetches(level, outer);
+
+        int predictedLevel = -1;
+        if (zoomDirection != 0 && nowNanos - lastZoomNanos < ZOOM_WINDOW_NANOS) {
+            predictedLevel = prefetchNextZoomStep(viewRect, pixelSize, level, nowNanos);
+        }
+        for (int other = 0; other <= SectionPyramid.MAX_LEVEL; other++) {
+            if (other != level && other != predictedLevel) cancelPrefetches(other, null);
+        }
+
+        // Hysteresis: keep what was pinned as long as it lies within the outer margin
+        Rectangle pin = new Rectangle(wanted);
+        if (!zoomed && pinned != null) {
+            Rectangle kept = pinned.intersection(outer);
+            if (!kept.isEmpty()) pin.add(kept);
+        }
+        pinned = pin;
+        lastLevel = level;
+        lastPixelSize = pixelSize;
+        if (level == 0) {
+            sectionManager.pinSections(pin);
+        } else {
+            sectionManager.getPyramid().pinTiles(level, pin);
+        }
+    }
+
+    // Smoothed view velocity in tiles per second
+    public double getVelocityX() {
+        return velocityX;
+    }
+
+    public double getVelocityY() {
+        return velocityY;
+    }
+
+    private void updateVelocity(double centerX, double centerY, long nowNanos) {
+        long elapsed = nowNanos - lastEventNanos;
+        if (Double.isNaN(lastCenterX) || elapsed > IDLE_NANOS) {
+            velocityX = 0;
+            velocityY = 0;
+            return;
+        }
+        if (elapsed <= 0) return;
+        double seconds = elapsed / 1e9;
+        velocityX = SMOOTHING * (centerX - lastCenterX) / seconds + (1 - SMOOTHING) * velocityX;
+        velocityY = SMOOTHING * (centerY - lastCenterY) / seconds + (1 - SMOOTHING) * velocityY;
+    }
+
+    // Requests the cells the next zoom step in the same direction will show, returns their level or -1
+    private int prefetchNextZoomStep(Rectangle viewRect, int pixelSize, int level, long nowNanos) {
+        int nextPixelSize = pixelSize;
+        int nextLevel = level;
+        if (zoomDirection < 0) {
+            if (pixelSize > minPixelSize) {
+                nextPixelSize--;
+            } else if (level < SectionPyramid.MAX_LEVEL) {
+                nextLevel++;
+            } else {
+                return -1;
+            }
+        } else {
+            if (level > 0) {
+                nextLevel--;
+            } else {
+                return -1; // Zooming in at full resolution shows a part of what is loaded already
+            }
+        }
+
+        // The same centre at the next scale, the component grows or shrinks around it
+        double ratio = (nextPixelSize / (double) (1 << nextLevel)) / (pixelSize / (double) (1 << level));
+        Rectangle nextView = new Rectangle((int) (viewRect.getCenterX() * ratio) - viewRect.width / 2,
+                (int) (viewRect.getCenterY() * ratio) - viewRect.height / 2, viewRect.width, viewRect.height);
+        Rectangle cells = cellsOf(nextView, SectionManager.SECTION_SIZE * nextPixelSize);
+        for (int x = cells.x; x < cells.x + cells.width; x++) {
+            for (int y = cells.y; y < cells.y + cells.height; y++) {
+                request(nextLevel, new Point(x, y), Priority.PREFETCH, nowNanos + ZOOM_DEADLINE_NANOS);
+            }
+        }
+        return nextLevel;
+    }
+
+    // Time until the view reaches a cell at its current velocity, or a slow default if it is not heading there
+    private static long arrivalNanos(Rectangle visible, Point key, double cellsPerSecondX, double cellsPerSecondY) {
+        int gapX = key.x < visible.x ? visible.x - key.x : Math.max(0, key.x - (visible.x + visible.width - 1));
+        int gapY = key.y < visible.y ? visible.y - key.y : Math.max(0, key.y - (visible.y + visible.height - 1));
+        double seconds = Math.max(secondsToCover(gapX, key.x < visible.x ? -cellsPerSecondX : cellsPerSecondX),
+                secondsToCover(gapY, key.y < visible.y ? -cellsPerSecondY : cellsPerSecondY));
+        if (Double.isInfinite(seconds)) return RING_NANOS_PER_CELL * (gapX + gapY);
+        return (long) (seconds * 1e9);
+    }
+
+    private static double secondsToCover(int gap, double speedTowards) {
+        if (gap == 0) return 0;
+        return speedTowards > 0 ? gap / speedTowards : Double.POSITIVE_INFINITY;
+    }
+
+    private void request(int level, Point key, Priority priority, long deadlineNanos) {
+        if (level == 0) {
+            sectionManager.getSectionAsync(key, priority, deadlineNanos);
+        } else {
+            sectionManager.getPyramid().getTileAsync(level, key, priority, deadlineNanos);
+        }
+    }
+
+    // Cancels queued prefetches of a level outside the kept area, all of them if it is null
+    private void cancelPrefetches(int level, Rectangle kept) {
+        if (level == 0) {
+            sectionManager.cancelPrefetches(key -> kept == null || !kept.contains(key));
+        } else {
+            sectionManager.getPyramid().cancelPrefetches(level, key -> kept == null || !kept.contains(key));
+        }
+    }
+
+    // Cells touched by a pixel area, the end is inclusive of a partly visible cell
+    private static Rectangle cellsOf(Rectangle pixels, int cellPixels) {
+        int startX = Math.floorDiv(pixels.x, cellPixels);
+        int startY = Math.floorDiv(pixels.y, cellPixels);
+        int endX = Math.floorDiv(pixels.x + pixels.width - 1, cellPixels);
+        int endY = Math.floorDiv(pixels.y + pixels.height - 1, cellPixels);
+        return new Rectangle(startX, startY, endX - startX + 1, endY - startY + 1);
+    }
+
+    private static Rectangle grow(Rectangle cells, int margin) {
+        Rectangle grown = new Rectangle(cells);
+        grown.grow(margin, margin);
+        return grown;
+    }
+
+    private static int clampCells(double cells) {
+        return (int) Math.round(Math.max(-MAX_LOOKAHEAD_CELLS, Math.min(MAX_LOOKAHEAD_CELLS, cells)));
+    }
+}
@@ -0,0 +1,348 @@
+package de.tjorven.pathfinder.gui.gui;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.gui.map.search.NodeTable;
+import de.tjorven.pathfinder.gui.section.AsyncSectionLoader.Priority;
+import de.tjorven.pathfinder.gui.section.HeightField;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Draws the terrain of the viewport from an off-screen buffer covering the view plus a margin of one tile.
+// The buffer is split into TILE_PIXELS squares aligned to the component, worker threads rasterise them in
+// parallel from cached section data and the event dispatch thread only copies finished tiles into the buffer
+// and the buffer onto the screen. Scrolling shifts the buffer with copyArea, so only the tiles that come into
+// view are rendered. A tile whose sections are not loaded yet shows the placeholder colour and is rendered again
+// once they arrive, painting never waits for disk or generation.
+// Methods not marked thread-safe are only called on the event dispatch thread.
+public class ViewportRenderer {
+    private static final int TILE_PIXELS = 128;
+    private static final int MOUNTAIN = Color.GRAY.getRGB();
+    private static final int FOREST = new Color(34, 139, 34).getRGB();
+    private static final int SAND = new Color(237, 201, 175).getRGB();
+    private static final int SHALLOW_WATER = new Color(0, 0, 255).getRGB();
+    private static final int DEEP_WATER = new Color(0, 0, 139).getRGB();
+
+    private final SectionManager sectionManager;
+    private final JComponent component;
+    private final Color placeholder;
+    private final ExecutorService workers;
+    private final AtomicInteger generation = new AtomicInteger(); // Bumped when every rendered tile is outdated
+    private final Queue<RenderedTile> finished = new ConcurrentLinkedQueue<>();
+    private final Queue<long[]> loadedCells = new ConcurrentLinkedQueue<>(); // Level and packed key
+
+    private BufferedImage buffer;
+    private int originX; // Component pixel of the buffer's top left corner, a multiple of TILE_PIXELS
+    private int originY;
+    private int pixelSize; // Scale the buffer was rendered at
+    private int level;
+    private final Map<Long, Tile> tiles = new HashMap<>(); // Tiles of the buffer by packed tile coordinates
+    private int queuedTiles;
+    private long renderedTiles;
+
+    public ViewportRenderer(SectionManager sectionManager, JComponent component, Color placeholder) {
+        this.sectionManager = sectionManager;
+        this.component = component;
+        this.placeholder = placeholder;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            Thread thread = new Thread(runnable, "viewport-renderer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1); // Below the event dispatch thread
+            return thread;
+        });
+    }
+
+    public static int biomeRgb(double height) {
+        if (height > 60) return MOUNTAIN;
+        if (height > 25) return FOREST;
+        if (height > 5) return SAND;
+        if (height > -20) return SHALLOW_WATER;
+        return DEEP_WATER;
+    }
+
+    // Draws the terrain behind viewRect, a cell (section or pyramid tile of the level) is SECTION_SIZE * pixelSize
+    // pixels wide. Tiles still being rendered show what the buffer held before, e.g. the previous zoom scaled.
+    public void paint(Graphics g, Rectangle viewRect, int pixelSize, int level) {
+        if (pixelSize != this.pixelSize || level != this.level) {
+            rescale(pixelSize, level);
+        }
+        layout(viewRect);
+        applyLoadedCells();
+        drainFinished();
+        schedule(viewRect);
+        g.drawImage(buffer, originX, originY, null);
+    }
+
+    // Thread-safe, called when a cell finished loading. The tiles showing it are rendered again.
+    public void cellLoaded(int level, Point cellKey) {
+        loadedCells.add(new long[]{level, NodeTable.pack(cellKey.x, cellKey.y)});
+        SwingUtilities.invokeLater(() -> {
+            if (level != this.level || buffer == null) return;
+            int cellPixels = SectionManager.SECTION_SIZE * pixelSize;
+            component.repaint(cellKey.x * cellPixels, cellKey.y * cellPixels, cellPixels, cellPixels);
+        });
+    }
+
+    // Every tile is rendered again, e.g. after the terrain was regenerated. The old image stays until then.
+    public void invalidateAll() {
+        generation.incrementAndGet(); // Renderings still queued are dropped
+        for (Tile tile : tiles.values()) {
+            tile.version++;
+            tile.queued = false;
+        }
+        queuedTiles = 0;
+    }
+
+    public int getQueuedTileCount() {
+        return queuedTiles;
+    }
+
+    public long getRenderedTileCount() {
+        return renderedTiles;
+    }
+
+    // New scale: every tile is outdated, the old buffer stretched to the new scale stands in until they are done
+    private void rescale(int pixelSize, int level) {
+        BufferedImage old = buffer;
+        if (old != null && this.pixelSize > 0) {
+            double ratio = (pixelSize / (double) (1 << level)) / (this.pixelSize / (double) (1 << this.level));
+            BufferedImage scaled = new BufferedImage(old.getWidth(), old.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = scaled.createGraphics();
+            g.setColor(placeholder);
+            g.fillRect(0, 0, scaled.getWidth(), scaled.getHeight());
+            // The origin stays, so the new buffer shows the same component pixels at the new scale
+            g.drawImage(old, (int) Math.round(originX * ratio) - originX, (int) Math.round(originY * ratio) - originY,
+                    (int) Math.ceil(old.getWidth() * ratio), (int) Math.ceil(old.getHeight() * ratio), null);
+            g.dispose();
+            buffer = scaled;
+        }
+        this.pixelSize = pixelSize;
+        this.level = level;
+        invalidateAll();
+    }
+
+    // Moves and resizes the buffer to cover the view plus the margin, keeping the pixels of tiles that stay
+    private void layout(Rectangle viewRect) {
+        int firstX = Math.max(0, Math.floorDiv(viewRect.x, TILE_PIXELS) - 1);
+        int firstY = Math.max(0, Math.floorDiv(viewRect.y, TILE_PIXELS) - 1);
+        int lastX = Math.floorDiv(viewRect.x + viewRect.width - 1, TILE_PIXELS) + 1;
+        int lastY = Math.floorDiv(viewRect.y + viewRect.height - 1, TILE_PIXELS) + 1;
+        int newOriginX = firstX * TILE_PIXELS;
+        int newOriginY = firstY * TILE_PIXELS;
+        int width = (lastX - firstX + 1) * TILE_PIXELS;
+        int height = (lastY - firstY + 1) * TILE_PIXELS;
+
+        if (buffer == null) {
+            buffer = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        } else if (buffer.getWidth() == width && buffer.getHeight() == height) {
+            if (newOriginX == originX && newOriginY == originY) return;
+            // Scrolled: shift what is still in view by whole tiles
+            Graphics g = buffer.getGraphics();
+            g.copyArea(0, 0, width, height, originX - newOriginX, originY - newOriginY);
+            g.dispose();
+        } else {
+            // The viewport was resized
+            BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics g = resized.getGraphics();
+            g.drawImage(buffer, originX - newOriginX, originY - newOriginY, null);
+            g.dispose();
+            buffer = resized;
+        }
+        originX = newOriginX;
+        originY = newOriginY;
+
+        Iterator<Map.Entry<Long, Tile>> iterator = tiles.entrySet().iterator();
+        while (iterator.hasNext()) {
+            long key = iterator.next().getKey();
+            int x = NodeTable.unpackX(key);
+            int y = NodeTable.unpackY(key);
+            if (x < firstX || x > lastX || y < firstY || y > lastY) iterator.remove();
+        }
+    }
+
+    // Tiles of the buffer that show a loaded cell of the current level get a new version
+    private void applyLoadedCells() {
+        int cellPixels = SectionManager.SECTION_SIZE * pixelSize;
+        for (long[] cell = loadedCells.poll(); cell != null; cell = loadedCells.poll()) {
+            if (cell[0] != level) continue;
+            int cellX = NodeTable.unpackX(cell[1]);
+            int cellY = NodeTable.unpackY(cell[1]);
+            int firstX = Math.floorDiv(cellX * cellPixels, TILE_PIXELS);
+            int firstY = Math.floorDiv(cellY * cellPixels, TILE_PIXELS);
+            int lastX = Math.floorDiv((cellX + 1) * cellPixels - 1, TILE_PIXELS);
+            int lastY = Math.floorDiv((cellY + 1) * cellPixels - 1, TILE_PIXELS);
+            for (int x = firstX; x <= lastX; x++) {
+                for (int y = firstY; y <= lastY; y++) {
+                    Tile tile = tiles.get(NodeTable.pack(x, y));
+                    if (tile != null) tile.version++;
+                }
+            }
+        }
+    }
+
+    // Copies finished tiles of the current scale into the buffer
+    private void drainFinished() {
+        Graphics g = null;
+        for (RenderedTile result = finished.poll(); result != null; result = finished.poll()) {
+            if (result.generation != generation.get()) continue;
+            Tile tile = tiles.get(NodeTable.pack(result.tileX, result.tileY));
+            if (tile == null || !tile.queued) continue;
+            tile.queued = false;
+            queuedTiles--;
+            if (result.image == null) continue; // Skipped, scheduled again below
+            if (g == null) g = buffer.getGraphics();
+            g.drawImage(result.image, result.tileX * TILE_PIXELS - originX, result.tileY * TILE_PIXELS - originY, null);
+            tile.renderedVersion = result.version;
+            renderedTiles++;
+        }
+        if (g != null) g.dispose();
+    }
+
+    // Queues the outdated tiles, visible ones first
+    private void schedule(Rectangle viewRect) {
+        int columns = buffer.getWidth() / TILE_PIXELS;
+        int rows = buffer.getHeight() / TILE_PIXELS;
+        int firstX = originX / TILE_PIXELS;
+        int firstY = originY / TILE_PIXELS;
+        List<Tile> margin = new ArrayList<>();
+        Graphics g = null;
+        for (int x = firstX; x < firstX + columns; x++) {
+            for (int y = firstY; y < firstY + rows; y++) {
+                long key = NodeTable.pack(x, y);
+                Tile tile = tiles.get(key);
+                if (tile == null) {
+                    // Came into view, clear what copyArea left behind until it is rendered
+                    tile = new Tile(x, y);
+                    tiles.put(key, tile);
+                    if (g == null) g = buffer.getGraphics();
+                    g.setColor(placeholder);
+                    g.fillRect(x * TILE_PIXELS - originX, y * TILE_PIXELS - originY, TILE_PIXELS, TILE_PIXELS);
+                }
+                if (tile.queued || tile.renderedVersion == tile.version) continue;
+                Rectangle bounds = new Rectangle(x * TILE_PIXELS, y * TILE_PIXELS, TILE_PIXELS, TILE_PIXELS);
+                if (bounds.intersects(viewRect)) {
+                    submit(tile);
+                } else {
+                    margin.add(tile);
+                }
+            }
+        }
+        if (g != null) g.dispose();
+        margin.forEach(this::submit);
+    }
+
+    private void submit(Tile tile) {
+        tile.queued = true;
+        queuedTiles++;
+        int tileX = tile.x;
+        int tileY = tile.y;
+        int version = tile.version;
+        int tileGeneration = generation.get();
+        int tilePixelSize = pixelSize;
+        int tileLevel = level;
+        workers.execute(() -> {
+            BufferedImage image = tileGeneration == generation.get() ? render(tileX, tileY, tilePixelSize, tileLevel) : null;
+            finished.add(new RenderedTile(tileX, tileY, version, tileGeneration, image));
+            component.repaint(tileX * TILE_PIXELS, tileY * TILE_PIXELS, TILE_PIXELS, TILE_PIXELS);
+        });
+    }
+
+    // Runs on a worker: one sample per pixelSize pixels, SECTION_SIZE samples per cell of the level
+    private BufferedImage render(int tileX, int tileY, int pixelSize, int level) {
+        int size = SectionManager.SECTION_SIZE;
+        int left = tileX * TILE_PIXELS;
+        int top = tileY * TILE_PIXELS;
+        int firstCellX = Math.floorDiv(left / pixelSize, size);
+        int firstCellY = Math.floorDiv(top / pixelSize, size);
+        int cellsX = Math.floorDiv((left + TILE_PIXELS - 1) / pixelSize, size) - firstCellX + 1;
+        int cellsY = Math.floorDiv((top + TILE_PIXELS - 1) / pixelSize, size) - firstCellY + 1;
+        HeightField[] cells = new HeightField[cellsX * cellsY];
+        for (int i = 0; i < cells.length; i++) {
+            Point key = new Point(firstCellX + i % cellsX, firstCellY + i / cellsX);
+            cells[i] = level == 0 ? sectionManager.getSectionIfCached(key)
+                    : sectionManager.getPyramid().getTileIfCached(level, key);
+            if (cells[i] == null) {
+                CompletableFuture<HeightField> load = level == 0 ? sectionManager.getSectionAsync(key, Priority.VISIBLE)
+                        : sectionManager.getPyramid().getTileAsync(level, key, Priority.VISIBLE);
+                if (load.isDone() && !load.isCompletedExceptionally()) {
+                    // Cached by another thread since the lookup, the load listeners are not called for it
+                    cells[i] = load.getNow(null);
+                } else {
+                    // Rendered again once it is there
+                    load.thenRun(() -> cellLoaded(level, key));
+                }
+            }
+        }
+
+        int placeholderRgb = placeholder.getRGB();
+        int[] pixels = new int[TILE_PIXELS * TILE_PIXELS];
+        for (int row = 0; row < TILE_PIXELS; row++) {
+            int sampleY = (top + row) / pixelSize;
+            if (row > 0 && sampleY == (top + row - 1) / pixelSize) {
+                System.arraycopy(pixels, (row - 1) * TILE_PIXELS, pixels, row * TILE_PIXELS, TILE_PIXELS);
+                continue;
+            }
+            int cellY = Math.floorDiv(sampleY, size);
+            int y = sampleY - cellY * size;
+            for (int column = 0; column < TILE_PIXELS; ) {
+                int sampleX = (left + column) / pixelSize;
+                int cellX = Math.floorDiv(sampleX, size);
+                HeightField cell = cells[(cellY - firstCellY) * cellsX + cellX - firstCellX];
+                int rgb = cell != null ? biomeRgb(cell.get(sampleX - cellX * size, y)) : placeholderRgb;
+                int end = Math.min(TILE_PIXELS, (sampleX + 1) * pixelSize - left); // Pixels of the same sample
+                Arrays.fill(pixels, row * TILE_PIXELS + column, row * TILE_PIXELS + end, rgb);
+                column = end;
+            }
+        }
+
+        // setDataElements keeps the image eligible for hardware acceleration, unlike grabbing its DataBuffer
+        BufferedImage image = new BufferedImage(TILE_PIXELS, TILE_PIXELS, BufferedImage.TYPE_INT_RGB);
+        image.getRaster().setDataElements(0, 0, TILE_PIXELS, TILE_PIXELS, pixels);
+        return image;
+    }
+
+    // Bookkeeping of one tile of the buffer. The version grows when its cells change, a rendering is current
+    // if it was made for the latest version.
+    private static final class Tile {
+        private final int x;
+        private final int y;
+        private int version;
+        private int renderedVersion = -1;
+        private boolean queued;
+
+        private Tile(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    private static final class RenderedTile {
+        private final int tileX;
+        private final int tileY;
+        private final int version;
+        private final int generation;
+        private final BufferedImage image; // Null if skipped as outdated
+
+        private RenderedTile(int tileX, int tileY, int version, int generation, BufferedImage image) {
+            this.tileX = tileX;
+            this.tileY = tileY;
+            this.version = version;
+            this.generation = generation;
+            this.image = image;
+        }
+    }
+}
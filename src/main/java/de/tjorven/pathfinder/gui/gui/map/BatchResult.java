@@ -0,0 +1,34 @@
+package de.tjorven.pathfinder.gui.gui.map;
+
+import java.awt.*;
+import java.util.List;
+
+// Paths of a batch in query order, null entries mark unreachable goals
+public final class BatchResult {
+    private final List<List<Point>> paths;
+    private final long elapsedNanos;
+
+    public BatchResult(List<List<Point>> paths, long elapsedNanos) {
+        this.paths = paths;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public List<List<Point>> getPaths() {
+        return paths;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getQueriesPerSecond() {
+        return elapsedNanos == 0 ? 0 : paths.size() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        long found = paths.stream().filter(path -> path != null).count();
+        return String.format("BatchResult[queries=%d, found=%d, elapsed=%.1f ms, throughput=%.1f queries/s]",
+                paths.size(), found, elapsedNanos / 1e6, getQueriesPerSecond());
+    }
+}
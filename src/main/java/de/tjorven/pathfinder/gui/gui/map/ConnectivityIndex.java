@@ -0,0 +1,260 @@
+package de.tjorven.pathfinder.gui.gui.map;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.section.HeightField;
+
+import java.awt.*;
+import java.util.Arrays;
+
+// Connected components of passable tiles inside a search window. Every section is flood-filled on its own into
+// local components, which a union-find over all sections stitches together across section borders.
+// Sections are added as they load. Until every section of the window is indexed, two tiles in different
+// components may still connect through a missing section, so only a complete index rejects queries.
+// A replaced section marks the union-find dirty, it is rebuilt from the stored labels on the next query.
+// All methods are thread-safe.
+public class ConnectivityIndex {
+    public static final int IMPASSABLE = -1;
+    public static final int UNKNOWN = -2; // Tile outside the window or its section is not indexed yet
+    private static final int SIZE = SectionManager.SECTION_SIZE;
+    private static final short UNVISITED = -2;
+
+    private final SectionManager sectionManager;
+    private final Rectangle tileBounds;
+    private final Rectangle sectionBounds;
+    private final short[][] labels; // Local component per tile (row-major) or IMPASSABLE, ~5 KB per section slot
+    private final int[] componentCounts; // Local components per section slot
+    private final int[] bases; // First union-find id of each section slot
+    private int[] parent = new int[1024];
+    private int ids; // Union-find ids in use
+    private int indexedSections;
+    private boolean dirty;
+    private long generation; // Bumped by invalidateAll, labels computed before that are dropped
+
+    public ConnectivityIndex(SectionManager sectionManager, Rectangle tileBounds) {
+        this.sectionManager = sectionManager;
+        this.tileBounds = new Rectangle(tileBounds);
+        int minSectionX = Math.floorDiv(tileBounds.x, SIZE);
+        int minSectionY = Math.floorDiv(tileBounds.y, SIZE);
+        int maxSectionX = Math.floorDiv(tileBounds.x + tileBounds.width - 1, SIZE);
+        int maxSectionY = Math.floorDiv(tileBounds.y + tileBounds.height - 1, SIZE);
+        this.sectionBounds = new Rectangle(minSectionX, minSectionY,
+                maxSectionX - minSectionX + 1, maxSectionY - minSectionY + 1);
+        int sections = sectionBounds.width * sectionBounds.height;
+        this.labels = new short[sections][];
+        this.componentCounts = new int[sections];
+        this.bases = new int[sections];
+    }
+
+    // Indexes a freshly loaded or replaced section, sections outside the window are ignored
+    public void indexSection(Point sectionKey, HeightField section) {
+        if (section == null || !sectionBounds.contains(sectionKey)) return;
+        long labelledGeneration = getGeneration();
+        short[] sectionLabels = new short[SIZE * SIZE];
+        int count = label(sectionKey, section, sectionLabels);
+
+        synchronized (this) {
+            if (generation != labelledGeneration) return;
+            int slot = slot(sectionKey.x, sectionKey.y);
+            boolean replaced = labels[slot] != null;
+            labels[slot] = sectionLabels;
+            componentCounts[slot] = count;
+            if (replaced) {
+                dirty = true;
+                return;
+            }
+            indexedSections++;
+            if (!dirty) {
+                addToUnionFind(slot);
+                stitchNeighbours(sectionKey.x, sectionKey.y);
+            }
+        }
+    }
+
+    // Loads and indexes every section of the window that is not indexed yet, takes a while for large windows.
+    // Reads past the section cache, the whole window would evict the sections of the viewport.
+    public void indexAll() {
+        for (int sx = sectionBounds.x; sx < sectionBounds.x + sectionBounds.width; sx++) {
+            for (int sy = sectionBounds.y; sy < sectionBounds.y + sectionBounds.height; sy++) {
+                if (isIndexed(sx, sy)) continue;
+                Point sectionKey = new Point(sx, sy);
+                indexSection(sectionKey, sectionManager.readSection(sectionKey));
+            }
+        }
+    }
+
+    // Re-indexes sections whose tiles changed, if they were indexed before
+    public void reindex(Point sectionKey) {
+        if (!sectionBounds.contains(sectionKey) || !isIndexed(sectionKey.x, sectionKey.y)) return;
+        indexSection(sectionKey, sectionManager.getSection(sectionKey, null));
+    }
+
+    // Forgets every section, e.g. after the whole map was regenerated
+    public synchronized void invalidateAll() {
+        Arrays.fill(labels, null);
+        Arrays.fill(componentCounts, 0);
+        indexedSections = 0;
+        ids = 0;
+        dirty = false;
+        generation++;
+    }
+
+    public synchronized boolean isComplete() {
+        return indexedSections == labels.length;
+    }
+
+    public synchronized int getIndexedSections() {
+        return indexedSections;
+    }
+
+    // Component id of a tile, IMPASSABLE for deep water or UNKNOWN if its section is not indexed
+    public synchronized int componentAt(int x, int y) {
+        if (!tileBounds.contains(x, y)) return UNKNOWN;
+        int slot = slot(Math.floorDiv(x, SIZE), Math.floorDiv(y, SIZE));
+        short[] sectionLabels = labels[slot];
+        if (sectionLabels == null) return UNKNOWN;
+        int local = sectionLabels[Math.floorMod(y, SIZE) * SIZE + Math.floorMod(x, SIZE)];
+        if (local == IMPASSABLE) return IMPASSABLE;
+        if (dirty) rebuild();
+        return find(bases[slot] + local);
+    }
+
+    // False only if the index proves that no path from start to goal exists inside the window.
+    // The start tile itself may be impassable, only entering a tile costs, so its neighbours count instead.
+    public synchronized boolean mayConnect(int startX, int startY, int goalX, int goalY) {
+        if (startX == goalX && startY == goalY) return true;
+        if (!isComplete()) return true;
+        int goal = componentAt(goalX, goalY);
+        if (goal == UNKNOWN) return true;
+        if (goal == IMPASSABLE) return false;
+
+        int start = componentAt(startX, startY);
+        if (start == UNKNOWN) return true;
+        if (start != IMPASSABLE) return start == goal;
+        return componentAt(startX - 1, startY) == goal || componentAt(startX + 1, startY) == goal
+                || componentAt(startX, startY - 1) == goal || componentAt(startX, startY + 1) == goal;
+    }
+
+    // Flood-fills the passable tiles of one section, returns the number of local components
+    private int label(Point sectionKey, HeightField section, short[] sectionLabels) {
+        int originX = sectionKey.x * SIZE;
+        int originY = sectionKey.y * SIZE;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                boolean passable = SectionHeightLookup.isPassable(section.get(x, y))
+                        && tileBounds.contains(originX + x, originY + y);
+                sectionLabels[y * SIZE + x] = passable ? UNVISITED : IMPASSABLE;
+            }
+        }
+
+        int[] stack = new int[SIZE * SIZE];
+        short count = 0;
+        for (int seed = 0; seed < sectionLabels.length; seed++) {
+            if (sectionLabels[seed] != UNVISITED) continue;
+            int top = 0;
+            stack[top++] = seed;
+            sectionLabels[seed] = count;
+            while (top > 0) {
+                int tile = stack[--top];
+                int x = tile % SIZE;
+                int y = tile / SIZE;
+                if (x > 0) top = visit(sectionLabels, stack, top, tile - 1, count);
+                if (x < SIZE - 1) top = visit(sectionLabels, stack, top, tile + 1, count);
+                if (y > 0) top = visit(sectionLabels, stack, top, tile - SIZE, count);
+                if (y < SIZE - 1) top = visit(sectionLabels, stack, top, tile + SIZE, count);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    // Labels an unvisited tile and pushes it, returns the new stack size
+    private static int visit(short[] sectionLabels, int[] stack, int top, int tile, short component) {
+        if (sectionLabels[tile] != UNVISITED) return top;
+        sectionLabels[tile] = component;
+        stack[top] = tile;
+        return top + 1;
+    }
+
+    private void rebuild() {
+        ids = 0;
+        for (int slot = 0; slot < labels.length; slot++) {
+            if (labels[slot] != null) addToUnionFind(slot);
+        }
+        for (int sx = sectionBounds.x; sx < sectionBounds.x + sectionBounds.width; sx++) {
+            for (int sy = sectionBounds.y; sy < sectionBounds.y + sectionBounds.height; sy++) {
+                if (labels[slot(sx, sy)] != null) stitchNeighbours(sx, sy);
+            }
+        }
+        dirty = false;
+    }
+
+    private void addToUnionFind(int slot) {
+        int count = componentCounts[slot];
+        if (ids + count > parent.length) {
+            parent = Arrays.copyOf(parent, Math.max(parent.length * 2, ids + count));
+        }
+        bases[slot] = ids;
+        for (int i = 0; i < count; i++) {
+            parent[ids + i] = ids + i;
+        }
+        ids += count;
+    }
+
+    // Joins the components of a section with those of its indexed neighbours along the shared borders.
+    // Stitching in both directions is harmless, union is idempotent.
+    private void stitchNeighbours(int sx, int sy) {
+        int slot = slot(sx, sy);
+        short[] own = labels[slot];
+        if (sx > sectionBounds.x && labels[slot(sx - 1, sy)] != null) {
+            int other = slot(sx - 1, sy);
+            for (int y = 0; y < SIZE; y++) {
+                stitch(slot, own[y * SIZE], other, labels[other][y * SIZE + SIZE - 1]);
+            }
+        }
+        if (sx < sectionBounds.x + sectionBounds.width - 1 && labels[slot(sx + 1, sy)] != null) {
+            int other = slot(sx + 1, sy);
+            for (int y = 0; y < SIZE; y++) {
+                stitch(slot, own[y * SIZE + SIZE - 1], other, labels[other][y * SIZE]);
+            }
+        }
+        if (sy > sectionBounds.y && labels[slot(sx, sy - 1)] != null) {
+            int other = slot(sx, sy - 1);
+            for (int x = 0; x < SIZE; x++) {
+                stitch(slot, own[x], other, labels[other][(SIZE - 1) * SIZE + x]);
+            }
+        }
+        if (sy < sectionBounds.y + sectionBounds.height - 1 && labels[slot(sx, sy + 1)] != null) {
+            int other = slot(sx, sy + 1);
+            for (int x = 0; x < SIZE; x++) {
+                stitch(slot, own[(SIZE - 1) * SIZE + x], other, labels[other][x]);
+            }
+        }
+    }
+
+    private void stitch(int slot, int local, int otherSlot, int otherLocal) {
+        if (local == IMPASSABLE || otherLocal == IMPASSABLE) return;
+        int a = find(bases[slot] + local);
+        int b = find(bases[otherSlot] + otherLocal);
+        if (a != b) parent[Math.max(a, b)] = Math.min(a, b);
+    }
+
+    private int find(int id) {
+        while (parent[id] != id) {
+            parent[id] = parent[parent[id]]; // Path halving
+            id = parent[id];
+        }
+        return id;
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private synchronized boolean isIndexed(int sx, int sy) {
+        return labels[slot(sx, sy)] != null;
+    }
+
+    private int slot(int sx, int sy) {
+        return (sx - sectionBounds.x) * sectionBounds.height + (sy - sectionBounds.y);
+    }
+}
@@ -1,141 +1,368 @@
 package de.tjorven.pathfinder.gui.gui.map;
 
 import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.gui.map.search.AStarSearch;
+import de.tjorven.pathfinder.gui.gui.map.search.AnytimeSearch;
+import de.tjorven.pathfinder.gui.gui.map.search.BidirectionalSearch;
+import de.tjorven.pathfinder.gui.gui.map.search.CompactPath;
+import de.tjorven.pathfinder.gui.gui.map.search.DStarLite;
+import de.tjorven.pathfinder.gui.gui.map.search.HierarchicalPathfinder;
+import de.tjorven.pathfinder.gui.gui.map.search.JumpPointSearch;
+import de.tjorven.pathfinder.gui.gui.map.search.LandmarkHeuristic;
+import de.tjorven.pathfinder.gui.gui.map.search.Movement;
+import de.tjorven.pathfinder.gui.gui.map.search.PathSmoother;
+import de.tjorven.pathfinder.gui.gui.map.search.ReverseDijkstra;
+import de.tjorven.pathfinder.gui.gui.map.search.SearchBudget;
+import de.tjorven.pathfinder.gui.gui.map.search.SearchMode;
+import de.tjorven.pathfinder.gui.gui.map.search.SearchResult;
 
 import java.awt.*;
+import java.io.File;
 import java.util.List;
-import java.util.*;
+import java.util.Random;
 
 public class MapPathfinder {
+    private static final int MAX_POINT_SAMPLES = 10_000;
     private final SectionManager sectionManager;
     private final int maxSearchRadius; // Limit the search space to reduce initialization time
     private Point startPoint;
     private Point endPoint;
-    private List<Point> path;
+    private CompactPath path; // Of the last findPath(), half a byte per tile
+    private long[] waypoints; // Smoothed or run-length compressed corners of path
+    private final AStarSearch search;
+    private final BidirectionalSearch bidirectionalSearch;
+    private final AnytimeSearch anytimeSearch;
+    private final HierarchicalPathfinder hierarchicalSearch;
+    private final JumpPointSearch jumpPointSearch;
+    private final ReverseDijkstra reverseDijkstra;
+    private final DStarLite incrementalSearch; // Keeps its state between queries towards the same goal
+    private final PathSmoother smoother;
+    private boolean smoothPaths = true;
+    private SearchMode searchMode = SearchMode.ASTAR;
+    private double jumpPointTolerance = 1; // Cost class width, paths cost at most (1 + tolerance) times the optimum
+    private double searchWeight = 1.5; // Heuristic weight of weighted A* and of the first ARA* pass
+    private SearchBudget searchBudget = SearchBudget.UNLIMITED; // Applies to the A* based modes
+    private Movement movement = Movement.FOUR; // Used by A* and weighted A*, the other modes stay 4-connected
+    private SearchResult lastResult;
+    private final PathfinderMetrics metrics = new PathfinderMetrics();
+    private boolean detailedMetrics; // Times height lookups and keeps the expanded nodes of the last search
+    private long heightLookupNanos; // Of the running search, only while detailedMetrics is set
+    private long[] exploredNodes; // Packed keys expanded by the last search, only while detailedMetrics is set
+    private final SectionHeightLookup heights;
+    private LandmarkHeuristic landmarks; // Null until built, A* then falls back to Manhattan distance
+    private final ConnectivityIndex connectivity; // Rejects queries between unconnected areas once complete
 
     public MapPathfinder(SectionManager sectionManager, int maxSearchRadius) {
         this.sectionManager = sectionManager;
         this.maxSearchRadius = maxSearchRadius;
+        this.heights = new SectionHeightLookup(sectionManager);
+        this.connectivity = new ConnectivityIndex(sectionManager, new Rectangle(0, 0, maxSearchRadius * 2, maxSearchRadius * 2));
+        this.search = new AStarSearch(this::cost, this::heuristic, 0, 0, maxSearchRadius * 2, maxSearchRadius * 2);
+        this.bidirectionalSearch = new BidirectionalSearch(this::tileCost, this::heuristic, 0, 0, maxSearchRadius * 2, maxSearchRadius * 2);
+        this.anytimeSearch = new AnytimeSearch(this::cost, this::heuristic, 0, 0, maxSearchRadius * 2, maxSearchRadius * 2);
+        int sectionsPerAxis = Math.floorDiv(maxSearchRadius * 2 - 1, SectionManager.SECTION_SIZE) + 1;
+        this.hierarchicalSearch = new HierarchicalPathfinder(this::cost, SectionManager.SECTION_SIZE,
+                new Rectangle(0, 0, sectionsPerAxis, sectionsPerAxis));
+        this.jumpPointSearch = new JumpPointSearch(this::tileCost, 0, 0, maxSearchRadius * 2, maxSearchRadius * 2);
+        this.reverseDijkstra = new ReverseDijkstra(this::cost, 0, 0, maxSearchRadius * 2, maxSearchRadius * 2);
+        this.incrementalSearch = new DStarLite(this::tileCost, 0, 0, maxSearchRadius * 2, maxSearchRadius * 2);
+        this.smoother = new PathSmoother(heights::tileCost);
     }
 
     public void findPath() {
-        path = aStarPathfinding(startPoint, endPoint);
+        lastResult = search(startPoint, endPoint, searchMode);
+        List<Point> found = lastResult.getPath();
+        path = found != null ? CompactPath.of(found) : null;
+        waypoints = path == null ? null : smoothPaths ? smoother.smooth(path) : path.waypoints();
     }
 
-    private List<Point> aStarPathfinding(Point start, Point end) {
-        PriorityQueue<Node> openSet = new PriorityQueue<>(Comparator.comparingDouble(Node::getF));
-        Set<Point> closedSet = new HashSet<>();
-        Map<Point, Point> cameFrom = new HashMap<>();
-        Map<Point, Double> gScore = new HashMap<>();
-        gScore.put(start, 0.0);
-        openSet.add(new Node(start, heuristic(start, end)));
+    public List<Point> findPath(Point start, Point end) {
+        return findPath(start, end, searchMode);
+    }
 
-        while (!openSet.isEmpty()) {
-            Node current = openSet.poll();
+    public List<Point> findPath(Point start, Point end, SearchMode mode) {
+        return search(start, end, mode).getPath();
+    }
 
-            if (current.point.equals(end)) {
-                return reconstructPath(cameFrom, end);
+    // Runs one search and reports its path together with the suboptimality bound and expansion count.
+    // The search budget only limits the A* based modes, the others always run to completion.
+    public SearchResult search(Point start, Point end, SearchMode mode) {
+        heights.reset();
+        heightLookupNanos = 0;
+        PathSearchEvent event = new PathSearchEvent();
+        event.begin();
+        long startNanos = System.nanoTime();
+        // Start and goal on different landmasses need no search, the search state is then left from an earlier query
+        boolean rejected = !connectivity.mayConnect(start.x, start.y, end.x, end.y);
+        SearchResult result = rejected ? new SearchResult(null, 1, 0, true) : runSearch(start, end, mode);
+        long wallNanos = System.nanoTime() - startNanos;
+        event.end();
+
+        long reopened = !rejected && (mode == SearchMode.ASTAR || mode == SearchMode.WEIGHTED) ? search.getReopenedNodes() : 0;
+        long peakOpenSet = rejected ? 0 : peakOpenSetSize(mode);
+        metrics.record(mode, result.getPath() != null, result.getExpandedNodes(), reopened, peakOpenSet, wallNanos, heightLookupNanos);
+        if (detailedMetrics) {
+            exploredNodes = rejected ? new long[0] : closedNodes(mode);
+        }
+        if (event.shouldCommit()) {
+            event.mode = mode.name();
+            event.found = result.getPath() != null;
+            event.expandedNodes = result.getExpandedNodes();
+            event.reopenedNodes = reopened;
+            event.peakOpenSetSize = peakOpenSet;
+            event.heightLookupNanos = heightLookupNanos;
+            event.commit();
+        }
+        return result;
+    }
+
+    private SearchResult runSearch(Point start, Point end, SearchMode mode) {
+        switch (mode) {
+            case ASTAR -> {
+                List<Point> found = search.search(start.x, start.y, end.x, end.y, 1, searchBudget);
+                return new SearchResult(found, 1, search.getExpandedNodes(), !search.isBudgetExhausted());
+            }
+            case WEIGHTED -> {
+                List<Point> found = search.search(start.x, start.y, end.x, end.y, searchWeight, searchBudget);
+                return new SearchResult(found, searchWeight, search.getExpandedNodes(), !search.isBudgetExhausted());
+            }
+            case BIDIRECTIONAL -> {
+                List<Point> found = bidirectionalSearch.search(start.x, start.y, end.x, end.y, searchBudget);
+                return new SearchResult(found, 1, bidirectionalSearch.getExpandedNodes(), !bidirectionalSearch.isBudgetExhausted());
+            }
+            case ANYTIME -> {
+                List<Point> found = anytimeSearch.search(start.x, start.y, end.x, end.y, searchWeight, searchBudget);
+                return new SearchResult(found, anytimeSearch.getSuboptimalityBound(), anytimeSearch.getExpandedNodes(),
+                        !anytimeSearch.isBudgetExhausted());
             }
+            case HIERARCHICAL -> {
+                // Abstract paths give no bound and are not counted in expansions
+                return new SearchResult(hierarchicalSearch.search(start.x, start.y, end.x, end.y),
+                        Double.POSITIVE_INFINITY, 0, true);
+            }
+            case JUMP_POINT -> {
+                List<Point> found = jumpPointSearch.search(start.x, start.y, end.x, end.y, jumpPointTolerance);
+                return new SearchResult(found, 1 + jumpPointTolerance, jumpPointSearch.getExpandedNodes(), true);
+            }
+            case INCREMENTAL -> {
+                List<Point> found = incrementalSearch.search(start.x, start.y, end.x, end.y);
+                return new SearchResult(found, 1, incrementalSearch.getExpandedNodes(), true);
+            }
+            default -> throw new IllegalArgumentException("Unknown search mode " + mode);
+        }
+    }
 
-            closedSet.add(current.point);
+    private long peakOpenSetSize(SearchMode mode) {
+        return switch (mode) {
+            case ASTAR, WEIGHTED -> search.getPeakOpenSetSize();
+            case BIDIRECTIONAL -> bidirectionalSearch.getPeakOpenSetSize();
+            case ANYTIME -> anytimeSearch.getPeakOpenSetSize();
+            case JUMP_POINT -> jumpPointSearch.getPeakOpenSetSize();
+            case INCREMENTAL -> incrementalSearch.getPeakOpenSetSize();
+            case HIERARCHICAL -> 0;
+        };
+    }
 
-            for (Point neighbor : getNeighbors(current.point)) {
-                if (closedSet.contains(neighbor)) continue;
+    private long[] closedNodes(SearchMode mode) {
+        return switch (mode) {
+            case ASTAR, WEIGHTED -> search.getClosedNodes();
+            case BIDIRECTIONAL -> bidirectionalSearch.getClosedNodes();
+            case ANYTIME -> anytimeSearch.getClosedNodes();
+            case JUMP_POINT -> jumpPointSearch.getClosedNodes();
+            case INCREMENTAL -> incrementalSearch.getClosedNodes();
+            case HIERARCHICAL -> new long[0];
+        };
+    }
 
-                double tentativeGScore = gScore.getOrDefault(current.point, Double.MAX_VALUE) + cost(current.point, neighbor);
+    // One search for many agents sharing a goal, paths are returned in the order of starts
+    public List<List<Point>> findPathsToGoal(Point goal, List<Point> starts) {
+        heights.reset();
+        return reverseDijkstra.search(goal.x, goal.y, starts);
+    }
 
-                if (tentativeGScore < gScore.getOrDefault(neighbor, Double.MAX_VALUE)) {
-                    cameFrom.put(neighbor, current.point);
-                    gScore.put(neighbor, tentativeGScore);
-                    double fScore = tentativeGScore + heuristic(neighbor, end);
+    // Drops cached search data derived from the terrain, call after sections were regenerated
+    public void onTerrainChanged() {
+        heights.reset();
+        hierarchicalSearch.invalidateAll();
+        landmarks = null;
+        incrementalSearch.reset(); // Repairing every touched node costs more than planning again
+        connectivity.invalidateAll();
+    }
 
-                    openSet.add(new Node(neighbor, fScore));
-                }
+    // Updates cached search data after single sections were regenerated
+    public void onSectionChanged(Point sectionKey) {
+        int size = SectionManager.SECTION_SIZE;
+        hierarchicalSearch.invalidate(sectionKey);
+        onTilesChanged(new Rectangle(sectionKey.x * size, sectionKey.y * size, size, size));
+    }
+
+    // Updates cached search data after the heights of the tiles in this area changed
+    public void onTilesChanged(Rectangle area) {
+        heights.reset();
+        if (landmarks != null) {
+            landmarks.repair(area.x, area.y, area.x + area.width, area.y + area.height);
+        }
+        incrementalSearch.tilesChanged(area.x, area.y, area.x + area.width, area.y + area.height);
+
+        int size = SectionManager.SECTION_SIZE;
+        for (int sx = Math.floorDiv(area.x, size); sx <= Math.floorDiv(area.x + area.width - 1, size); sx++) {
+            for (int sy = Math.floorDiv(area.y, size); sy <= Math.floorDiv(area.y + area.height - 1, size); sy++) {
+                connectivity.reindex(new Point(sx, sy));
             }
         }
+    }
 
-        return null; // No path found
+    // Call when a section finished loading, e.g. from the section load listener. Thread-safe.
+    public void onSectionLoaded(Point sectionKey) {
+        connectivity.indexSection(sectionKey, sectionManager.getSectionIfCached(sectionKey));
     }
 
-    private List<Point> getNeighbors(Point point) {
-        List<Point> neighbors = new ArrayList<>();
-        int[] dx = {-1, 1, 0, 0};
-        int[] dy = {0, 0, -1, 1};
+    // Indexes the connectivity of every section in the search window, loading them as needed.
+    // Takes a while and is safe to call from another thread, unreachable queries are rejected once it is done.
+    public void buildConnectivity() {
+        connectivity.indexAll();
+    }
 
-        for (int i = 0; i < 4; i++) {
-            int nx = point.x + dx[i];
-            int ny = point.y + dy[i];
+    public ConnectivityIndex getConnectivity() {
+        return connectivity;
+    }
 
-            // Clamp neighbors within valid bounds
-            if (nx >= 0 && ny >= 0 && nx < maxSearchRadius * 2 && ny < maxSearchRadius * 2) {
-                neighbors.add(new Point(nx, ny));
-            }
-        }
+    // Loads landmark tables for the search window from tableFile if it matches the window, otherwise computes them.
+    // Loads every section of the window and takes a while, the result is meant to be handed to setLandmarks.
+    // Safe to call from another thread as it uses its own height lookup.
+    public LandmarkHeuristic buildLandmarks(int landmarkCount, File tableFile) {
+        SectionHeightLookup lookup = new SectionHeightLookup(sectionManager);
+        int size = maxSearchRadius * 2;
+        LandmarkHeuristic table = tableFile != null ? LandmarkHeuristic.load(tableFile, lookup::tileCost, 0, 0, size, size) : null;
+        if (table == null) table = LandmarkHeuristic.build(lookup::tileCost, 0, 0, size, size, landmarkCount);
+        return table;
+    }
 
-        return neighbors;
+    public LandmarkHeuristic getLandmarks() {
+        return landmarks;
     }
 
-    private double heuristic(Point a, Point b) {
-        return Math.abs(a.x - b.x) + Math.abs(a.y - b.y); // Manhattan distance
+    public void setLandmarks(LandmarkHeuristic landmarks) {
+        if (landmarks != null) landmarks.setTileCost(this::tileCost);
+        this.landmarks = landmarks;
     }
 
-    private double cost(Point a, Point b) {
-        double terrainHeight = getHeightAt(b.x, b.y);
-        if (terrainHeight < -20) return Double.MAX_VALUE; // Deep water is inaccessible
-        return 1 + Math.abs(15 - terrainHeight); // Adjust cost based on terrain height
+    public SearchMode getSearchMode() {
+        return searchMode;
     }
 
-    private double getHeightAt(int x, int y) {
-        int sectionX = Math.floorDiv(x, SectionManager.SECTION_SIZE);
-        int sectionY = Math.floorDiv(y, SectionManager.SECTION_SIZE);
-        Point sectionKey = new Point(sectionX, sectionY);
-        double[][] section = sectionManager.getSection(sectionKey, null);
+    public void setSearchMode(SearchMode searchMode) {
+        this.searchMode = searchMode;
+    }
 
-        if (section != null) {
-            int localX = Math.floorMod(x, SectionManager.SECTION_SIZE);
-            int localY = Math.floorMod(y, SectionManager.SECTION_SIZE);
-            return section[localX][localY];
-        }
+    public double getSearchWeight() {
+        return searchWeight;
+    }
 
-        return 0; // Default height if section is not loaded
+    // At least 1, weighted A* paths cost at most this factor times the optimum
+    public void setSearchWeight(double searchWeight) {
+        this.searchWeight = Math.max(1, searchWeight);
     }
 
-    private List<Point> reconstructPath(Map<Point, Point> cameFrom, Point current) {
-        List<Point> path = new ArrayList<>();
-        while (cameFrom.containsKey(current)) {
-            path.add(current);
-            current = cameFrom.get(current);
-        }
-        path.add(current);
-        Collections.reverse(path);
-        return path;
+    public Movement getMovement() {
+        return movement;
     }
 
-    public void clearPath() {
-        path = null;
+    public void setMovement(Movement movement) {
+        this.movement = movement;
+        search.setMovement(movement);
     }
 
-    public void generateRandomStartAndEndPoints() {
-        Random random = new Random();
+    public SearchBudget getSearchBudget() {
+        return searchBudget;
+    }
+
+    public void setSearchBudget(SearchBudget searchBudget) {
+        this.searchBudget = searchBudget;
+    }
+
+    public PathfinderMetrics getMetrics() {
+        return metrics;
+    }
+
+    public boolean isDetailedMetrics() {
+        return detailedMetrics;
+    }
+
+    // Also measures height lookup time and keeps the expanded nodes for getExploredNodes.
+    // Reads the clock twice per tile lookup, so leave it off when not debugging.
+    public void setDetailedMetrics(boolean detailedMetrics) {
+        this.detailedMetrics = detailedMetrics;
+        if (!detailedMetrics) exploredNodes = null;
+    }
+
+    // Packed tile keys (see NodeTable.pack) expanded by the last search, null without detailed metrics
+    public long[] getExploredNodes() {
+        return exploredNodes;
+    }
+
+    // Result of the last findPath() between the start and end point, null before the first search
+    public SearchResult getLastResult() {
+        return lastResult;
+    }
+
+    public double getJumpPointTolerance() {
+        return jumpPointTolerance;
+    }
 
-        do {
-            startPoint = generateRandomPoint(random);
-        } while (getHeightAt(startPoint.x, startPoint.y) < 5); // Ensure start is on land
+    // 0 keeps jump point search exact, larger values merge more terrain into uniform regions
+    public void setJumpPointTolerance(double jumpPointTolerance) {
+        this.jumpPointTolerance = jumpPointTolerance;
+    }
 
-        do {
-            endPoint = generateRandomPoint(random);
-        } while (getHeightAt(endPoint.x, endPoint.y) < 5 || startPoint.equals(endPoint)); // Ensure end is on land
+    private double heuristic(int x, int y, int goalX, int goalY) {
+        // Landmark distances are 4-connected and overestimate once diagonal moves are allowed
+        if (movement == Movement.EIGHT) return movement.distance(x, y, goalX, goalY); // Octile distance
+        if (landmarks != null) return landmarks.estimate(x, y, goalX, goalY);
+        return Math.abs(x - goalX) + Math.abs(y - goalY); // Manhattan distance
     }
 
-    private Point generateRandomPoint(Random random) {
-        int x = random.nextInt(maxSearchRadius * 2) - maxSearchRadius;
-        int y = random.nextInt(maxSearchRadius * 2) - maxSearchRadius;
+    private double cost(int fromX, int fromY, int toX, int toY) {
+        return tileCost(toX, toY);
+    }
 
-        // Clamp the point to ensure it is within valid map bounds
-        x = Math.max(0, x);
-        y = Math.max(0, y);
+    private double tileCost(int x, int y) {
+        if (!detailedMetrics) return heights.tileCost(x, y);
+        long start = System.nanoTime();
+        double cost = heights.tileCost(x, y);
+        heightLookupNanos += System.nanoTime() - start;
+        return cost;
+    }
 
-        return new Point(x, y);
+    public void clearPath() {
+        path = null;
+        waypoints = null;
+        lastResult = null;
+    }
+
+    // Picks land tiles for start and end, the end in the same component as the start while the index knows it
+    public void generateRandomStartAndEndPoints() {
+        heights.reset();
+        Random random = new Random();
+        startPoint = randomLandPoint(random, ConnectivityIndex.UNKNOWN, null);
+        endPoint = randomLandPoint(random, connectivity.componentAt(startPoint.x, startPoint.y), startPoint);
+    }
+
+    // Samples tiles until one is on land and, unless component is UNKNOWN, in that component.
+    // Gives up after MAX_POINT_SAMPLES and returns the last land tile seen, or the last sample if there was none.
+    private Point randomLandPoint(Random random, int component, Point exclude) {
+        Point fallback = null;
+        for (int attempt = 0; attempt < MAX_POINT_SAMPLES; attempt++) {
+            Point point = new Point(random.nextInt(maxSearchRadius * 2), random.nextInt(maxSearchRadius * 2));
+            if (heights.getHeightAt(point.x, point.y) < 5 || point.equals(exclude)) continue; // Not on land
+            fallback = point;
+            int pointComponent = connectivity.componentAt(point.x, point.y);
+            if (component == ConnectivityIndex.UNKNOWN || pointComponent == ConnectivityIndex.UNKNOWN
+                    || pointComponent == component) {
+                return point;
+            }
+        }
+        return fallback != null ? fallback : new Point(random.nextInt(maxSearchRadius * 2), random.nextInt(maxSearchRadius * 2));
     }
 
     public Point getStartPoint() {
@@ -146,21 +373,22 @@ public class MapPathfinder {
         return endPoint;
     }
 
-    public List<Point> getPath() {
+    // Tiles of the last findPath(), null if there is none
+    public CompactPath getPath() {
         return path;
     }
 
-    private static class Node {
-        Point point;
-        double f;
+    // Packed keys (see NodeTable.pack) of the corners to draw the last path as one polyline, null without a path
+    public long[] getWaypoints() {
+        return waypoints;
+    }
 
-        Node(Point point, double f) {
-            this.point = point;
-            this.f = f;
-        }
+    public boolean isSmoothPaths() {
+        return smoothPaths;
+    }
 
-        double getF() {
-            return f;
-        }
+    // Straightens the waypoints of the next paths by line of sight, the tiles of getPath() stay as searched
+    public void setSmoothPaths(boolean smoothPaths) {
+        this.smoothPaths = smoothPaths;
     }
 }
@@ -0,0 +1,22 @@
+package de.tjorven.pathfinder.gui.gui.map;
+
+import java.awt.*;
+
+// A single start/goal pair of a batch
+public final class PathQuery {
+    private final Point start;
+    private final Point goal;
+
+    public PathQuery(Point start, Point goal) {
+        this.start = start;
+        this.goal = goal;
+    }
+
+    public Point getStart() {
+        return start;
+    }
+
+    public Point getGoal() {
+        return goal;
+    }
+}
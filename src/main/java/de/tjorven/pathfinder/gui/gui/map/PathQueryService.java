@@ -0,0 +1,83 @@
+package de.tjorven.pathfinder.gui.gui.map;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.gui.map.search.SearchMode;
+import de.tjorven.pathfinder.gui.gui.map.search.SearchResult;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+// Thread-safe entry point for routing many agents at once. Queries run in parallel on a fork-join pool and
+// every worker thread keeps its own MapPathfinder, so search buffers are reused across queries while the
+// section data is shared read-only through the SectionManager cache.
+public class PathQueryService implements AutoCloseable {
+    private final ForkJoinPool pool;
+    private final ThreadLocal<Worker> workers;
+    private final AtomicLong terrainVersion = new AtomicLong();
+
+    public PathQueryService(SectionManager sectionManager, int maxSearchRadius, int threads) {
+        this.pool = new ForkJoinPool(threads);
+        this.workers = ThreadLocal.withInitial(() -> new Worker(new MapPathfinder(sectionManager, maxSearchRadius)));
+    }
+
+    public BatchResult findPaths(List<PathQuery> queries) {
+        return findPaths(queries, SearchMode.ASTAR);
+    }
+
+    public BatchResult findPaths(List<PathQuery> queries, SearchMode mode) {
+        long start = System.nanoTime();
+        // Pre-sized, every worker sets its own index
+        List<List<Point>> paths = new ArrayList<>(Collections.nCopies(queries.size(), null));
+        pool.submit(() -> IntStream.range(0, queries.size()).parallel().forEach(i -> {
+            PathQuery query = queries.get(i);
+            paths.set(i, pathfinder().findPath(query.getStart(), query.getGoal(), mode));
+        })).join();
+        return new BatchResult(paths, System.nanoTime() - start);
+    }
+
+    // Runs one query on the calling thread with that thread's pathfinder, e.g. from a server's request threads
+    public SearchResult search(Point start, Point goal, SearchMode mode) {
+        return pathfinder().search(start, goal, mode);
+    }
+
+    // Many agents heading to one goal share a single backwards Dijkstra
+    public BatchResult findPathsToGoal(Point goal, List<Point> starts) {
+        long start = System.nanoTime();
+        List<List<Point>> paths = pool.submit(() -> pathfinder().findPathsToGoal(goal, starts)).join();
+        return new BatchResult(paths, System.nanoTime() - start);
+    }
+
+    // Call after sections were regenerated, every worker drops its cached search data before its next query
+    public void onTerrainChanged() {
+        terrainVersion.incrementAndGet();
+    }
+
+    private MapPathfinder pathfinder() {
+        Worker worker = workers.get();
+        long version = terrainVersion.get();
+        if (worker.terrainVersion != version) {
+            worker.pathfinder.onTerrainChanged();
+            worker.terrainVersion = version;
+        }
+        return worker.pathfinder;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static final class Worker {
+        private final MapPathfinder pathfinder;
+        private long terrainVersion;
+
+        private Worker(MapPathfinder pathfinder) {
+            this.pathfinder = pathfinder;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package de.tjorven.pathfinder.gui.gui.map;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// JFR event per search, recorded with e.g. -XX:StartFlightRecording. Costs next to nothing while JFR is off.
+@Name("de.tjorven.pathfinder.PathSearch")
+@Label("Path Search")
+@Category("Pathfinder")
+class PathSearchEvent extends Event {
+    @Label("Mode")
+    String mode;
+
+    @Label("Found")
+    boolean found;
+
+    @Label("Expanded Nodes")
+    long expandedNodes;
+
+    @Label("Reopened Nodes")
+    long reopenedNodes;
+
+    @Label("Peak Open Set")
+    long peakOpenSetSize;
+
+    @Label("Height Lookup Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long heightLookupNanos;
+}
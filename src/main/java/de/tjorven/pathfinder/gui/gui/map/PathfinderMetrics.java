@@ -0,0 +1,108 @@
+package de.tjorven.pathfinder.gui.gui.map;
+
+import de.tjorven.pathfinder.gui.gui.map.search.SearchMode;
+
+// Counters of the searches run by one MapPathfinder: the last query plus totals since creation or reset.
+// Height lookup time is only measured while timing is enabled, as reading the clock per tile is not free.
+// Like its MapPathfinder, an instance is not thread-safe.
+public class PathfinderMetrics {
+    private SearchMode lastMode;
+    private boolean lastFound;
+    private long lastExpandedNodes;
+    private long lastReopenedNodes;
+    private long lastPeakOpenSetSize;
+    private long lastSearchNanos; // Wall time minus height lookups
+    private long lastHeightLookupNanos;
+
+    private long queries;
+    private long expandedNodes;
+    private long reopenedNodes;
+    private long peakOpenSetSize; // Largest over all queries
+    private long searchNanos;
+    private long heightLookupNanos;
+
+    void record(SearchMode mode, boolean found, long expanded, long reopened, long peakOpenSet,
+                long wallNanos, long lookupNanos) {
+        lastMode = mode;
+        lastFound = found;
+        lastExpandedNodes = expanded;
+        lastReopenedNodes = reopened;
+        lastPeakOpenSetSize = peakOpenSet;
+        lastSearchNanos = wallNanos - lookupNanos;
+        lastHeightLookupNanos = lookupNanos;
+
+        queries++;
+        expandedNodes += expanded;
+        reopenedNodes += reopened;
+        peakOpenSetSize = Math.max(peakOpenSetSize, peakOpenSet);
+        searchNanos += lastSearchNanos;
+        heightLookupNanos += lookupNanos;
+    }
+
+    public void reset() {
+        queries = 0;
+        expandedNodes = 0;
+        reopenedNodes = 0;
+        peakOpenSetSize = 0;
+        searchNanos = 0;
+        heightLookupNanos = 0;
+    }
+
+    public SearchMode getLastMode() {
+        return lastMode;
+    }
+
+    public boolean isLastFound() {
+        return lastFound;
+    }
+
+    public long getLastExpandedNodes() {
+        return lastExpandedNodes;
+    }
+
+    public long getLastReopenedNodes() {
+        return lastReopenedNodes;
+    }
+
+    public long getLastPeakOpenSetSize() {
+        return lastPeakOpenSetSize;
+    }
+
+    public long getLastSearchNanos() {
+        return lastSearchNanos;
+    }
+
+    public long getLastHeightLookupNanos() {
+        return lastHeightLookupNanos;
+    }
+
+    public long getQueries() {
+        return queries;
+    }
+
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    public long getReopenedNodes() {
+        return reopenedNodes;
+    }
+
+    public long getPeakOpenSetSize() {
+        return peakOpenSetSize;
+    }
+
+    public long getSearchNanos() {
+        return searchNanos;
+    }
+
+    public long getHeightLookupNanos() {
+        return heightLookupNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("PathfinderMetrics[queries=%d, expanded=%d, reopened=%d, peakOpen=%d, search=%.1f ms, lookups=%.1f ms]",
+                queries, expandedNodes, reopenedNodes, peakOpenSetSize, searchNanos / 1e6, heightLookupNanos / 1e6);
+    }
+}
@@ -2,43 +2,127 @@ package de.tjorven.pathfinder.gui.gui.map;
 
 import de.tjorven.pathfinder.gui.PerlinNoise;
 
-import java.awt.*;
-import java.util.List;
-import java.util.Queue;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 public class PerlinMap {
 
-    PerlinNoise perlin = new PerlinNoise(UUID.randomUUID().toString().getBytes());
+    PerlinNoise perlin;
     private static final int WIDTH = 4000; // Larger width
     private static final int HEIGHT = 2000; // Larger height
     private static final int SCALE = 20;
     private static final int PIXEL_SIZE = 5;
+    private static final int SMOOTH_RADIUS = 2; // 5x5 box
+    private static final int SMOOTH_ITERATIONS = 5;
+    private static final int SMOOTH_HALO = SMOOTH_RADIUS * SMOOTH_ITERATIONS; // Cells that influence a smoothed cell
+    private static final int MIN_REGION_SIZE = 50;
     private double[][] map;
+    private long seed;
+
+    public PerlinMap() {
+        this(ThreadLocalRandom.current().nextLong());
+    }
+
+    // Every tile is a pure function of the seed, so sections can be regenerated instead of stored
+    public PerlinMap(long seed) {
+        this.seed = seed;
+        perlin = new PerlinNoise(seed);
+    }
 
     public void resetPerlin() {
-        perlin = new PerlinNoise(UUID.randomUUID().toString().getBytes());
+        seed = ThreadLocalRandom.current().nextLong();
+        perlin = new PerlinNoise(seed);
+    }
+
+    public long getSeed() {
+        return seed;
     }
 
     public double[][] generateMap() {
-        map = new double[WIDTH / PIXEL_SIZE][HEIGHT / PIXEL_SIZE];
-
-        for (int x = 0; x < map.length; x++) {
-            for (int y = 0; y < map[0].length; y++) {
-                double noiseValue = (perlin.noise(x / (double) SCALE, y / (double) SCALE) * 0.6
-                        + perlin.noise(x / (double) (SCALE / 2), y / (double) (SCALE / 2)) * 0.3
-                        + perlin.noise(x / (double) (SCALE * 2), y / (double) (SCALE * 2)) * 0.1)
-                        * 200 - 100;
-                map[x][y] = noiseValue;
-            }
+        map = generateMap(WIDTH / PIXEL_SIZE, HEIGHT / PIXEL_SIZE);
+        return map;
+    }
+
+    public double[][] generateMap(int width, int height) {
+        double[] heights = generateHeights(width, height);
+        double[][] result = new double[width][];
+        for (int x = 0; x < width; x++) {
+            result[x] = Arrays.copyOfRange(heights, x * height, (x + 1) * height);
         }
+        return result;
+    }
 
-        map = smoothMap(map, 5);
+    // Same pipeline as generateMap on a flat array indexed x * height + y, for maps too large for double[][] copies.
+    // Noise and smoothing run in parallel over stripes of columns on the common fork-join pool.
+    public double[] generateHeights(int width, int height) {
+        double[] heights = smoothedHeights(0, 0, width, height, stripeWidth(width));
+        mergeSmallRegions(heights, width, height, 0, MIN_REGION_SIZE);
+        return heights;
+    }
 
-        Map<Point, List<Point>> regions = floodFillRegions(map, 0);
-        mergeSmallRegions(map, regions, 50);
+    // Fills out[x][y] with the smoothed and region-merged terrain at (startX + x, startY + y) of an unbounded world.
+    // It equals generateMap away from the map border without generating anything but a halo around the block:
+    // SMOOTH_HALO cells for smoothing, plus the margin region merging needs. A region smaller than MIN_REGION_SIZE
+    // reaches at most MIN_REGION_SIZE - 1 cells beyond the block, and regions of equal heights are rare, so the
+    // wide margin is only computed when a cell in or next to the block has an equal neighbour.
+    public void generateTerrain(int startX, int startY, double[][] out) {
+        int width = out.length;
+        int height = out[0].length;
+        int margin = 1;
+        double[] window = smoothedWindow(startX, startY, width, height, margin);
+        if (hasEqualNeighbors(window, width + 2 * margin, height + 2 * margin, 0)) {
+            margin = MIN_REGION_SIZE - 1;
+            window = smoothedWindow(startX, startY, width, height, margin);
+        }
 
-        return map;
+        int windowHeight = height + 2 * margin;
+        mergeSmallRegions(window, width + 2 * margin, windowHeight, 0, MIN_REGION_SIZE);
+        for (int x = 0; x < width; x++) {
+            System.arraycopy(window, (x + margin) * windowHeight + margin, out[x], 0, height);
+        }
+    }
+
+    private double[] smoothedWindow(int startX, int startY, int width, int height, int margin) {
+        int windowWidth = width + 2 * margin;
+        int windowHeight = height + 2 * margin;
+        int paddedHeight = windowHeight + 2 * SMOOTH_HALO;
+
+        // Cells closer than SMOOTH_HALO to the padded border average over missing neighbours, only the inside is kept
+        double[] padded = smoothedHeights(startX - margin - SMOOTH_HALO, startY - margin - SMOOTH_HALO,
+                windowWidth + 2 * SMOOTH_HALO, paddedHeight, windowWidth + 2 * SMOOTH_HALO);
+        double[] window = new double[windowWidth * windowHeight];
+        for (int x = 0; x < windowWidth; x++) {
+            System.arraycopy(padded, (x + SMOOTH_HALO) * paddedHeight + SMOOTH_HALO, window, x * windowHeight, windowHeight);
+        }
+        return window;
+    }
+
+    private double[] smoothedHeights(int startX, int startY, int width, int height, int stripeWidth) {
+        double[] heights = new double[Math.multiplyExact(width, height)];
+        forEachStripe(width, stripeWidth, (fromX, toX) -> {
+            double[][] block = new double[toX - fromX][height];
+            generateTiles(startX + fromX, startY, block);
+            for (int x = fromX; x < toX; x++) {
+                System.arraycopy(block[x - fromX], 0, heights, x * height, height);
+            }
+        });
+
+        smooth(heights, width, height, stripeWidth, SMOOTH_ITERATIONS);
+        return heights;
+    }
+
+    private static boolean hasEqualNeighbors(double[] heights, int width, int height, double threshold) {
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int index = x * height + y;
+                double value = heights[index];
+                if (value >= threshold) continue;
+                if ((y > 0 && heights[index - 1] == value) || (x > 0 && heights[index - height] == value)) return true;
+            }
+        }
+        return false;
     }
 
     public double generateTile(int x, int y) {
@@ -48,106 +132,161 @@ public class PerlinMap {
                 * 200 - 100;
     }
 
-    private double[][] smoothMap(double[][] map, int iterations) {
-        int width = map.length;
-        int height = map[0].length;
+    // Fills out[x][y] with generateTile(startX + x, startY + y), evaluating each octave for the whole block at once
+    public void generateTiles(int startX, int startY, double[][] out) {
+        for (double[] column : out) {
+            Arrays.fill(column, 0);
+        }
 
-        for (int i = 0; i < iterations; i++) {
-            double[][] smoothed = new double[width][height];
+        addOctave(startX, startY, SCALE, 0.6, out);
+        addOctave(startX, startY, SCALE / 2, 0.3, out);
+        addOctave(startX, startY, SCALE * 2, 0.1, out);
 
-            for (int x = 0; x < width; x++) {
-                for (int y = 0; y < height; y++) {
-                    double sum = 0;
-                    int count = 0;
-
-                    // Iterate over a larger neighborhood (5x5 instead of 3x3)
-                    for (int dx = -2; dx <= 2; dx++) {
-                        for (int dy = -2; dy <= 2; dy++) {
-                            int nx = x + dx;
-                            int ny = y + dy;
-
-                            // Check boundaries
-                            if (nx >= 0 && ny >= 0 && nx < width && ny < height) {
-                                sum += map[nx][ny];
-                                count++;
-                            }
-                        }
-                    }
-
-                    // Compute average of neighboring cells
-                    smoothed[x][y] = sum / count;
-                }
+        for (double[] column : out) {
+            for (int y = 0; y < column.length; y++) {
+                column[y] = column[y] * 200 - 100;
             }
+        }
+    }
 
-            map = smoothed; // Update the map with smoothed values
+    private void addOctave(int startX, int startY, int scale, double weight, double[][] out) {
+        double[] xs = new double[out.length];
+        double[] ys = new double[out[0].length];
+        for (int x = 0; x < xs.length; x++) xs[x] = (startX + x) / (double) scale;
+        for (int y = 0; y < ys.length; y++) ys[y] = (startY + y) / (double) scale;
+        perlin.noise(xs, ys, weight, out);
+    }
+
+    // Repeated box blur with a window of 2 * SMOOTH_RADIUS + 1, averaging only the cells inside the map.
+    // Each iteration runs separably: sums along y into scratch, then sums of those along x back. The window sums
+    // add their terms in a fixed order instead of sliding, so a cell's result does not depend on where the block
+    // starts and sections generated with a halo match the full map bit for bit.
+    private void smooth(double[] heights, int width, int height, int stripeWidth, int iterations) {
+        double[] sums = new double[heights.length];
+        int[] countY = new int[height];
+        for (int y = 0; y < height; y++) {
+            countY[y] = Math.min(y + SMOOTH_RADIUS, height - 1) - Math.max(y - SMOOTH_RADIUS, 0) + 1;
         }
 
-        return map;
+        for (int i = 0; i < iterations; i++) {
+            forEachStripe(width, stripeWidth, (fromX, toX) -> {
+                for (int x = fromX; x < toX; x++) {
+                    sumColumn(heights, sums, x * height, height);
+                }
+            });
+            forEachStripe(width, stripeWidth, (fromX, toX) -> averageStripe(sums, heights, countY, width, height, fromX, toX));
+        }
     }
 
-    private Map<Point, List<Point>> floodFillRegions(double[][] map, double threshold) {
-        int width = map.length;
-        int height = map[0].length;
-        boolean[][] visited = new boolean[width][height];
-        Map<Point, List<Point>> regions = new HashMap<>();
+    private static void sumColumn(double[] source, double[] target, int base, int height) {
+        for (int y = 0; y < height; y++) {
+            if (y == SMOOTH_RADIUS && height > 2 * SMOOTH_RADIUS) {
+                // Unclipped rows, written out for radius 2 with the same order of additions as the loop below
+                for (; y < height - SMOOTH_RADIUS; y++) {
+                    int index = base + y;
+                    target[index] = source[index - 2] + source[index - 1] + source[index] + source[index + 1] + source[index + 2];
+                }
+                if (y == height) break;
+            }
+            double sum = 0;
+            for (int ny = Math.max(y - SMOOTH_RADIUS, 0); ny <= Math.min(y + SMOOTH_RADIUS, height - 1); ny++) {
+                sum += source[base + ny];
+            }
+            target[base + y] = sum;
+        }
+    }
 
-        for (int x = 0; x < width; x++) {
+    private static void averageStripe(double[] sums, double[] target, int[] countY, int width, int height, int fromX, int toX) {
+        for (int x = fromX; x < toX; x++) {
+            int minX = Math.max(x - SMOOTH_RADIUS, 0);
+            int maxX = Math.min(x + SMOOTH_RADIUS, width - 1);
+            int countX = maxX - minX + 1;
+            int base = x * height;
+            if (countX == 2 * SMOOTH_RADIUS + 1) {
+                // Unclipped columns, streams through five neighbouring columns of sums
+                int left2 = base - 2 * height;
+                int left1 = base - height;
+                int right1 = base + height;
+                int right2 = base + 2 * height;
+                for (int y = 0; y < height; y++) {
+                    double sum = sums[left2 + y] + sums[left1 + y] + sums[base + y] + sums[right1 + y] + sums[right2 + y];
+                    target[base + y] = sum / (countX * countY[y]);
+                }
+                continue;
+            }
             for (int y = 0; y < height; y++) {
-                if (!visited[x][y]) {
-                    double value = map[x][y];
-                    if (value < threshold) { // Only consider points below the threshold
-                        List<Point> region = new ArrayList<>();
-                        floodFill(x, y, value, map, visited, region);
-                        regions.put(new Point(x, y), region);
-                    }
+                double sum = 0;
+                for (int nx = minX; nx <= maxX; nx++) {
+                    sum += sums[nx * height + y];
                 }
+                target[base + y] = sum / (countX * countY[y]);
             }
         }
-
-        return regions;
     }
 
-    private void floodFill(int x, int y, double value, double[][] map, boolean[][] visited, List<Point> region) {
-        int width = map.length;
-        int height = map[0].length;
-        Queue<Point> queue = new LinkedList<>();
-        queue.add(new Point(x, y));
+    // Cells below threshold that form a 4-connected region of equal height smaller than minRegionSize are
+    // flattened to sand, shallow or deep water. Regions are labelled with union-find in one pass over the map.
+    private static void mergeSmallRegions(double[] heights, int width, int height, double threshold, int minRegionSize) {
+        int[] parent = new int[heights.length];
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                int index = x * height + y;
+                parent[index] = index;
+                double value = heights[index];
+                if (value >= threshold) continue;
+                if (y > 0 && heights[index - 1] == value) union(parent, index, index - 1);
+                if (x > 0 && heights[index - height] == value) union(parent, index, index - height);
+            }
+        }
 
-        while (!queue.isEmpty()) {
-            Point point = queue.poll();
-            int px = point.x;
-            int py = point.y;
+        int[] size = new int[heights.length];
+        for (int index = 0; index < heights.length; index++) {
+            if (heights[index] < threshold) size[find(parent, index)]++;
+        }
 
-            if (px < 0 || py < 0 || px >= width || py >= height || visited[px][py] || map[px][py] != value) {
-                continue;
+        for (int index = 0; index < heights.length; index++) {
+            double value = heights[index];
+            if (value >= threshold || size[find(parent, index)] >= minRegionSize) continue;
+            if (value > 5) { // Merge into sand if it's higher
+                heights[index] = 10;
+            } else if (value > -20) { // Merge into shallow water if lower
+                heights[index] = -10;
+            } else {
+                heights[index] = -50; // Merge into deep water
             }
+        }
+    }
 
-            visited[px][py] = true;
-            region.add(point);
-
-            // Add neighbors to the queue
-            queue.add(new Point(px - 1, py));
-            queue.add(new Point(px + 1, py));
-            queue.add(new Point(px, py - 1));
-            queue.add(new Point(px, py + 1));
-        }
-    }
-
-    private void mergeSmallRegions(double[][] map, Map<Point, List<Point>> regions, int minRegionSize) {
-        for (Map.Entry<Point, List<Point>> entry : regions.entrySet()) {
-            List<Point> region = entry.getValue();
-            if (region.size() < minRegionSize) {
-                for (Point point : region) {
-                    double height = map[point.x][point.y];
-                    if (height > 5) { // Merge into sand if it's higher
-                        map[point.x][point.y] = 10;
-                    } else if (height > -20) { // Merge into shallow water if lower
-                        map[point.x][point.y] = -10;
-                    } else {
-                        map[point.x][point.y] = -50; // Merge into deep water
-                    }
-                }
-            }
+    private static int find(int[] parent, int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]]; // Path halving
+            index = parent[index];
         }
+        return index;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        int rootA = find(parent, a);
+        int rootB = find(parent, b);
+        if (rootA != rootB) parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+    }
+
+    private static int stripeWidth(int width) {
+        int stripes = ForkJoinPool.getCommonPoolParallelism() * 4;
+        return Math.max(16, (width + stripes - 1) / stripes);
+    }
+
+    private static void forEachStripe(int width, int stripeWidth, StripeTask task) {
+        if (stripeWidth >= width) {
+            task.run(0, width); // Single sections generated on loader threads stay on the calling thread
+            return;
+        }
+        int stripes = (width + stripeWidth - 1) / stripeWidth;
+        IntStream.range(0, stripes).parallel().forEach(stripe ->
+                task.run(stripe * stripeWidth, Math.min(width, (stripe + 1) * stripeWidth)));
+    }
+
+    private interface StripeTask {
+        void run(int fromX, int toX);
     }
 }
@@ -0,0 +1,62 @@
+package de.tjorven.pathfinder.gui.gui.map;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.section.HeightField;
+
+import java.awt.*;
+import java.util.Arrays;
+
+// Reads tile heights through the shared section cache and remembers recently used sections in a table indexed by
+// the low 5 bits of both section coordinates. Any 32x32 window of sections (1600x1600 tiles) fits without
+// collisions, so searches rarely touch the synchronized cache.
+// The section data itself is read-only, but the memo is not, so use one instance per thread.
+public class SectionHeightLookup {
+    public static final double DEEP_WATER = -20; // Tiles below this height are impassable
+    private static final int MEMO_BITS = 5; // Low bits per section coordinate, the memo covers 32x32 sections
+    private static final int MEMO_MASK = (1 << MEMO_BITS) - 1;
+    private static final int MEMO_SIZE = 1 << (2 * MEMO_BITS);
+    private final SectionManager sectionManager;
+    private final long[] memoKeys = new long[MEMO_SIZE];
+    private final HeightField[] memoSections = new HeightField[MEMO_SIZE];
+
+    public SectionHeightLookup(SectionManager sectionManager) {
+        this.sectionManager = sectionManager;
+    }
+
+    public double getHeightAt(int x, int y) {
+        int sectionX = Math.floorDiv(x, SectionManager.SECTION_SIZE);
+        int sectionY = Math.floorDiv(y, SectionManager.SECTION_SIZE);
+        long key = ((long) sectionX << 32) | (sectionY & 0xFFFFFFFFL);
+        int slot = ((sectionX & MEMO_MASK) << MEMO_BITS) | (sectionY & MEMO_MASK);
+        HeightField section = memoSections[slot];
+        if (section == null || memoKeys[slot] != key) {
+            section = sectionManager.getSection(new Point(sectionX, sectionY), null);
+            memoKeys[slot] = key;
+            memoSections[slot] = section;
+        }
+
+        if (section != null) {
+            int localX = Math.floorMod(x, SectionManager.SECTION_SIZE);
+            int localY = Math.floorMod(y, SectionManager.SECTION_SIZE);
+            return section.get(localX, localY);
+        }
+
+        return 0; // Default height if section is not loaded
+    }
+
+    // Cost of entering a tile
+    public double tileCost(int x, int y) {
+        double terrainHeight = getHeightAt(x, y);
+        if (!isPassable(terrainHeight)) return Double.MAX_VALUE; // Deep water is inaccessible
+        return 1 + Math.abs(15 - terrainHeight); // Adjust cost based on terrain height
+    }
+
+    public static boolean isPassable(double height) {
+        return height >= DEEP_WATER;
+    }
+
+    // Sections may have been regenerated since the last query
+    public void reset() {
+        Arrays.fill(memoSections, null);
+    }
+}
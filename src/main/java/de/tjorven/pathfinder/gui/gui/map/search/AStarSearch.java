@@ -0,0 +1,174 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// A* over the tile grid working purely on packed coordinates and node slots.
+// Closed nodes are reopened when a cheaper route to them turns up, which keeps paths optimal for heuristics that
+// are admissible but not quite consistent (e.g. landmark bounds with float rounding).
+// The movement model decides between 4- and 8-connected moves, see Movement.
+// With a weight w > 1 the heuristic is inflated and closed nodes stay closed, which expands far fewer nodes and
+// returns paths costing at most w times the optimum.
+// An instance keeps its buffers between searches and is not thread-safe.
+public class AStarSearch {
+    private final NodeTable nodes = new NodeTable();
+    private final IndexedMinHeap openSet = new IndexedMinHeap();
+    private final CostFunction costFunction;
+    private final Heuristic heuristic;
+    private final int minX;
+    private final int minY;
+    private final int maxX; // Exclusive
+    private final int maxY; // Exclusive
+    private Movement movement = Movement.FOUR;
+    private long expandedNodes;
+    private long reopenedNodes;
+    private boolean budgetExhausted;
+
+    public AStarSearch(CostFunction costFunction, Heuristic heuristic, int minX, int minY, int maxX, int maxY) {
+        this.costFunction = costFunction;
+        this.heuristic = heuristic;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public List<Point> search(int startX, int startY, int goalX, int goalY) {
+        return search(startX, startY, goalX, goalY, minX, minY, maxX, maxY, 1, SearchBudget.UNLIMITED);
+    }
+
+    // Weighted search that gives up with null once the budget is spent, see isBudgetExhausted
+    public List<Point> search(int startX, int startY, int goalX, int goalY, double weight, SearchBudget budget) {
+        return search(startX, startY, goalX, goalY, minX, minY, maxX, maxY, weight, budget);
+    }
+
+    // Same as search but restricted to a smaller window, max bounds are exclusive
+    public List<Point> search(int startX, int startY, int goalX, int goalY, int minX, int minY, int maxX, int maxY) {
+        return search(startX, startY, goalX, goalY, minX, minY, maxX, maxY, 1, SearchBudget.UNLIMITED);
+    }
+
+    public List<Point> search(int startX, int startY, int goalX, int goalY, int minX, int minY, int maxX, int maxY,
+                              double weight, SearchBudget budget) {
+        nodes.clear();
+        openSet.clear();
+        expandedNodes = 0;
+        reopenedNodes = 0;
+        budgetExhausted = false;
+        boolean reopen = weight == 1;
+        long startNanos = System.nanoTime();
+
+        double startEstimate = heuristic.estimate(startX, startY, goalX, goalY);
+        if (startEstimate == Double.POSITIVE_INFINITY) return null;
+
+        int[] dx = movement.dx;
+        int[] dy = movement.dy;
+        double[] stepFactor = movement.stepFactor;
+        int[] cornerMask = movement.cornerMask;
+        long goalKey = NodeTable.pack(goalX, goalY);
+        int start = nodes.insert(NodeTable.pack(startX, startY));
+        nodes.setG(start, 0);
+        openSet.insertOrDecrease(start, weight * startEstimate);
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.poll();
+            long currentKey = nodes.key(current);
+
+            if (currentKey == goalKey) {
+                return reconstructPath(current);
+            }
+
+            if (budget.isExhausted(expandedNodes, startNanos)) {
+                budgetExhausted = true;
+                return null;
+            }
+            nodes.setClosed(current, true);
+            expandedNodes++;
+
+            int x = NodeTable.unpackX(currentKey);
+            int y = NodeTable.unpackY(currentKey);
+            double g = nodes.g(current);
+
+            int passable = 0; // Bit per orthogonal move that can be taken, diagonals need both of theirs
+            for (int i = 0; i < dx.length; i++) {
+                if ((passable & cornerMask[i]) != cornerMask[i]) continue; // Would cut a corner
+                int nx = x + dx[i];
+                int ny = y + dy[i];
+
+                // Clamp neighbors within the search window
+                if (nx < minX || ny < minY || nx >= maxX || ny >= maxY) continue;
+
+                double stepCost = costFunction.cost(x, y, nx, ny);
+                if (stepCost >= Double.MAX_VALUE) continue; // Impassable
+                if (cornerMask[i] == 0) passable |= 1 << i;
+                stepCost *= stepFactor[i];
+
+                long neighborKey = NodeTable.pack(nx, ny);
+                int neighbor = nodes.find(neighborKey);
+                double tentativeGScore = g + stepCost;
+                if (neighbor >= 0 && (tentativeGScore >= nodes.g(neighbor) || (!reopen && nodes.isClosed(neighbor)))) continue;
+
+                double estimate = heuristic.estimate(nx, ny, goalX, goalY);
+                if (estimate == Double.POSITIVE_INFINITY) continue; // Proven unable to reach the goal
+
+                if (neighbor < 0) {
+                    neighbor = nodes.insert(neighborKey);
+                } else if (nodes.isClosed(neighbor)) {
+                    nodes.setClosed(neighbor, false);
+                    reopenedNodes++;
+                }
+
+                nodes.setG(neighbor, tentativeGScore);
+                nodes.setParent(neighbor, current);
+                openSet.insertOrDecrease(neighbor, tentativeGScore + weight * estimate);
+            }
+        }
+
+        return null; // No path found
+    }
+
+    public Movement getMovement() {
+        return movement;
+    }
+
+    // The heuristic has to stay admissible for the chosen movement, e.g. octile distance for 8-way moves
+    public void setMovement(Movement movement) {
+        this.movement = movement;
+    }
+
+    // Nodes expanded by the last search
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    // Largest open set of the last search
+    public int getPeakOpenSetSize() {
+        return openSet.getPeakSize();
+    }
+
+    // Packed keys of the nodes the last search expanded
+    public long[] getClosedNodes() {
+        return nodes.closedKeys();
+    }
+
+    // Whether the last search stopped because its budget ran out
+    public boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    // Closed nodes that had to be expanded again in the last search, 0 for consistent heuristics
+    public long getReopenedNodes() {
+        return reopenedNodes;
+    }
+
+    private List<Point> reconstructPath(int goal) {
+        List<Point> path = new ArrayList<>();
+        for (int slot = goal; slot >= 0; slot = nodes.parent(slot)) {
+            long key = nodes.key(slot);
+            path.add(new Point(NodeTable.unpackX(key), NodeTable.unpackY(key)));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+}
@@ -0,0 +1,201 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Anytime repairing A* (ARA*, Likhachev et al.). A first weighted search finds a path quickly, then the weight is
+// lowered step by step and each pass reuses the g-scores of the previous one, re-expanding only nodes whose cost
+// improved. When the budget runs out the best path so far is returned together with its suboptimality bound,
+// min(w, cost / lowest f-score of any unfinished node). An instance reuses its buffers and is not thread-safe.
+public class AnytimeSearch {
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+    private static final double WEIGHT_STEP = 0.5; // Weight decrease between two passes
+
+    private final NodeTable nodes = new NodeTable();
+    private final IndexedMinHeap openSet = new IndexedMinHeap();
+    private final CostFunction costFunction;
+    private final Heuristic heuristic;
+    private final int minX;
+    private final int minY;
+    private final int maxX; // Exclusive
+    private final int maxY; // Exclusive
+    private boolean[] inconsistent = new boolean[1024]; // Closed in this pass but improved since, per node slot
+    private int goalX;
+    private int goalY;
+    private long expandedNodes;
+    private double suboptimalityBound;
+    private boolean budgetExhausted;
+
+    public AnytimeSearch(CostFunction costFunction, Heuristic heuristic, int minX, int minY, int maxX, int maxY) {
+        this.costFunction = costFunction;
+        this.heuristic = heuristic;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    // Returns the best path found within the budget, starting with initialWeight and ending at weight 1.
+    // The bound of the returned path is available from getSuboptimalityBound.
+    public List<Point> search(int startX, int startY, int goalX, int goalY, double initialWeight, SearchBudget budget) {
+        this.goalX = goalX;
+        this.goalY = goalY;
+        nodes.clear();
+        openSet.clear();
+        expandedNodes = 0;
+        suboptimalityBound = Double.POSITIVE_INFINITY;
+        budgetExhausted = false;
+        long startNanos = System.nanoTime();
+
+        double startEstimate = heuristic.estimate(startX, startY, goalX, goalY);
+        if (startEstimate == Double.POSITIVE_INFINITY) {
+            suboptimalityBound = 1; // Proven unreachable
+            return null;
+        }
+
+        long goalKey = NodeTable.pack(goalX, goalY);
+        int start = insert(NodeTable.pack(startX, startY));
+        nodes.setG(start, 0);
+        double weight = Math.max(1, initialWeight);
+        openSet.insertOrDecrease(start, weight * startEstimate);
+
+        while (true) {
+            boolean finished = improvePath(goalKey, weight, budget, startNanos);
+            int goal = nodes.find(goalKey);
+            if (goal < 0 || nodes.g(goal) >= Double.MAX_VALUE) {
+                // No path yet, a finished pass proves that the goal is unreachable
+                if (finished) suboptimalityBound = 1;
+                return null;
+            }
+
+            // A pass cut short may still have improved the goal, its parent chain is a valid path costing at most g
+            double bound = nodes.g(goal) / lowestUnfinishedF();
+            if (finished) bound = Math.min(bound, weight);
+            suboptimalityBound = Math.max(1, Math.min(suboptimalityBound, bound));
+            if (!finished || weight == 1) return reconstructPath(goal);
+
+            weight = Math.max(1, weight - WEIGHT_STEP);
+            reopenInconsistent(weight);
+        }
+    }
+
+    // Nodes expanded by the last search over all passes
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    // Largest open set of the last search
+    public int getPeakOpenSetSize() {
+        return openSet.getPeakSize();
+    }
+
+    // Packed keys of the nodes the last search expanded
+    public long[] getClosedNodes() {
+        return nodes.closedKeys();
+    }
+
+    // Factor by which the last returned path may cost more than the optimum
+    public double getSuboptimalityBound() {
+        return suboptimalityBound;
+    }
+
+    // Whether the last search stopped because its budget ran out
+    public boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    // One weighted pass, returns false if the budget ran out before the goal was settled
+    private boolean improvePath(long goalKey, double weight, SearchBudget budget, long startNanos) {
+        while (!openSet.isEmpty()) {
+            int goal = nodes.find(goalKey);
+            if (goal >= 0 && nodes.g(goal) <= openSet.peekPriority()) return true;
+            if (budget.isExhausted(expandedNodes, startNanos)) {
+                budgetExhausted = true;
+                return false;
+            }
+
+            int current = openSet.poll();
+            nodes.setClosed(current, true);
+            expandedNodes++;
+
+            long currentKey = nodes.key(current);
+            int x = NodeTable.unpackX(currentKey);
+            int y = NodeTable.unpackY(currentKey);
+            double g = nodes.g(current);
+
+            for (int i = 0; i < DX.length; i++) {
+                int nx = x + DX[i];
+                int ny = y + DY[i];
+                if (nx < minX || ny < minY || nx >= maxX || ny >= maxY) continue;
+
+                double stepCost = costFunction.cost(x, y, nx, ny);
+                if (stepCost >= Double.MAX_VALUE) continue; // Impassable
+
+                long neighborKey = NodeTable.pack(nx, ny);
+                int neighbor = nodes.find(neighborKey);
+                double tentativeGScore = g + stepCost;
+                if (neighbor >= 0 && tentativeGScore >= nodes.g(neighbor)) continue;
+
+                double estimate = heuristic.estimate(nx, ny, goalX, goalY);
+                if (estimate == Double.POSITIVE_INFINITY) continue; // Proven unable to reach the goal
+
+                if (neighbor < 0) neighbor = insert(neighborKey);
+                nodes.setG(neighbor, tentativeGScore);
+                nodes.setParent(neighbor, current);
+                if (nodes.isClosed(neighbor)) {
+                    inconsistent[neighbor] = true; // Waits for the next pass instead of being expanded again now
+                } else {
+                    openSet.insertOrDecrease(neighbor, tentativeGScore + weight * estimate);
+                }
+            }
+        }
+        return true;
+    }
+
+    // Lowest unweighted f-score of any open or inconsistent node, a lower bound on the optimal cost
+    private double lowestUnfinishedF() {
+        double lowest = Double.POSITIVE_INFINITY;
+        for (int slot = 0; slot < nodes.size(); slot++) {
+            if (!openSet.contains(slot) && !inconsistent[slot]) continue;
+            long key = nodes.key(slot);
+            lowest = Math.min(lowest, nodes.g(slot) + heuristic.estimate(NodeTable.unpackX(key), NodeTable.unpackY(key), goalX, goalY));
+        }
+        return lowest;
+    }
+
+    // Moves inconsistent nodes back into the open set, re-keys it for the new weight and reopens all closed nodes
+    private void reopenInconsistent(double weight) {
+        for (int slot = 0; slot < nodes.size(); slot++) {
+            boolean open = openSet.contains(slot) || inconsistent[slot];
+            inconsistent[slot] = false;
+            nodes.setClosed(slot, false);
+            if (!open) continue;
+            long key = nodes.key(slot);
+            double estimate = heuristic.estimate(NodeTable.unpackX(key), NodeTable.unpackY(key), goalX, goalY);
+            openSet.insertOrUpdate(slot, nodes.g(slot) + weight * estimate, 0);
+        }
+    }
+
+    private int insert(long key) {
+        int slot = nodes.insert(key);
+        if (slot >= inconsistent.length) {
+            inconsistent = Arrays.copyOf(inconsistent, inconsistent.length * 2);
+        }
+        inconsistent[slot] = false;
+        return slot;
+    }
+
+    private List<Point> reconstructPath(int goal) {
+        List<Point> path = new ArrayList<>();
+        for (int slot = goal; slot >= 0; slot = nodes.parent(slot)) {
+            long key = nodes.key(slot);
+            path.add(new Point(NodeTable.unpackX(key), NodeTable.unpackY(key)));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+}
@@ -0,0 +1,214 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// Bidirectional A*: one search runs forwards from the start, one backwards from the goal, and the side with the
+// smaller open set expands next. The best meeting point so far is optimal once either side has no open node
+// with an f-score below its cost. An enclosed start or goal, e.g. surrounded by deep water, exhausts its small
+// side quickly, which proves the goal unreachable without flooding the whole window from the other end.
+// An instance reuses its buffers and is not thread-safe.
+public class BidirectionalSearch {
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+
+    private final NodeTable forwardNodes = new NodeTable();
+    private final NodeTable backwardNodes = new NodeTable(); // g is the cost from the node to the goal
+    private final IndexedMinHeap forwardOpen = new IndexedMinHeap();
+    private final IndexedMinHeap backwardOpen = new IndexedMinHeap();
+    private final TileCost tileCost;
+    private final Heuristic heuristic;
+    private final int minX;
+    private final int minY;
+    private final int maxX; // Exclusive
+    private final int maxY; // Exclusive
+    private double bestCost;
+    private int meetForward; // Slot of the best meeting node in forwardNodes
+    private int meetBackward; // Slot of the same node in backwardNodes
+    private long expandedNodes;
+    private boolean budgetExhausted;
+
+    public BidirectionalSearch(TileCost tileCost, Heuristic heuristic, int minX, int minY, int maxX, int maxY) {
+        this.tileCost = tileCost;
+        this.heuristic = heuristic;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public List<Point> search(int startX, int startY, int goalX, int goalY) {
+        return search(startX, startY, goalX, goalY, SearchBudget.UNLIMITED);
+    }
+
+    // Gives up with null once the budget is spent, see isBudgetExhausted
+    public List<Point> search(int startX, int startY, int goalX, int goalY, SearchBudget budget) {
+        forwardNodes.clear();
+        backwardNodes.clear();
+        forwardOpen.clear();
+        backwardOpen.clear();
+        expandedNodes = 0;
+        budgetExhausted = false;
+        bestCost = Double.POSITIVE_INFINITY;
+        long startNanos = System.nanoTime();
+
+        if (startX == goalX && startY == goalY) {
+            List<Point> path = new ArrayList<>();
+            path.add(new Point(startX, startY));
+            return path;
+        }
+        double startEstimate = heuristic.estimate(startX, startY, goalX, goalY);
+        if (startEstimate == Double.POSITIVE_INFINITY) return null;
+
+        int start = forwardNodes.insert(NodeTable.pack(startX, startY));
+        forwardNodes.setG(start, 0);
+        forwardOpen.insertOrDecrease(start, startEstimate);
+        int goal = backwardNodes.insert(NodeTable.pack(goalX, goalY));
+        backwardNodes.setG(goal, 0);
+        backwardOpen.insertOrDecrease(goal, startEstimate);
+
+        while (!forwardOpen.isEmpty() && !backwardOpen.isEmpty()) {
+            if (Math.max(forwardOpen.peekPriority(), backwardOpen.peekPriority()) >= bestCost) break;
+            if (budget.isExhausted(expandedNodes, startNanos)) {
+                budgetExhausted = true;
+                return null;
+            }
+            expandedNodes++;
+            if (forwardOpen.size() <= backwardOpen.size()) {
+                expandForward(goalX, goalY);
+            } else {
+                expandBackward(startX, startY);
+            }
+        }
+
+        // An empty side without a meeting point proves that no path exists
+        return bestCost == Double.POSITIVE_INFINITY ? null : reconstructPath();
+    }
+
+    // Nodes expanded by the last search, both directions together
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    // Largest open sets of the last search, both directions together
+    public int getPeakOpenSetSize() {
+        return forwardOpen.getPeakSize() + backwardOpen.getPeakSize();
+    }
+
+    // Packed keys of the nodes the last search expanded, a node expanded from both sides appears twice
+    public long[] getClosedNodes() {
+        long[] forward = forwardNodes.closedKeys();
+        long[] backward = backwardNodes.closedKeys();
+        long[] result = Arrays.copyOf(forward, forward.length + backward.length);
+        System.arraycopy(backward, 0, result, forward.length, backward.length);
+        return result;
+    }
+
+    // Whether the last search stopped because its budget ran out
+    public boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+
+    private void expandForward(int goalX, int goalY) {
+        int current = forwardOpen.poll();
+        forwardNodes.setClosed(current, true);
+        long currentKey = forwardNodes.key(current);
+        int x = NodeTable.unpackX(currentKey);
+        int y = NodeTable.unpackY(currentKey);
+        double g = forwardNodes.g(current);
+
+        for (int i = 0; i < DX.length; i++) {
+            int nx = x + DX[i];
+            int ny = y + DY[i];
+            if (nx < minX || ny < minY || nx >= maxX || ny >= maxY) continue;
+
+            double stepCost = tileCost.cost(nx, ny);
+            if (stepCost >= Double.MAX_VALUE) continue; // Impassable
+
+            long neighborKey = NodeTable.pack(nx, ny);
+            int neighbor = forwardNodes.find(neighborKey);
+            double tentativeGScore = g + stepCost;
+            if (neighbor >= 0 && tentativeGScore >= forwardNodes.g(neighbor)) continue;
+
+            double estimate = heuristic.estimate(nx, ny, goalX, goalY);
+            if (estimate == Double.POSITIVE_INFINITY) continue; // Proven unable to reach the goal
+
+            if (neighbor < 0) {
+                neighbor = forwardNodes.insert(neighborKey);
+            } else {
+                forwardNodes.setClosed(neighbor, false);
+            }
+            forwardNodes.setG(neighbor, tentativeGScore);
+            forwardNodes.setParent(neighbor, current);
+            forwardOpen.insertOrDecrease(neighbor, tentativeGScore + estimate);
+
+            int other = backwardNodes.find(neighborKey);
+            if (other >= 0) offerMeeting(neighbor, other);
+        }
+    }
+
+    private void expandBackward(int startX, int startY) {
+        int current = backwardOpen.poll();
+        backwardNodes.setClosed(current, true);
+        long currentKey = backwardNodes.key(current);
+        int x = NodeTable.unpackX(currentKey);
+        int y = NodeTable.unpackY(currentKey);
+
+        // Every predecessor pays the cost of entering the current tile
+        double stepCost = tileCost.cost(x, y);
+        if (stepCost >= Double.MAX_VALUE) return;
+        double tentativeGScore = backwardNodes.g(current) + stepCost;
+
+        for (int i = 0; i < DX.length; i++) {
+            int px = x + DX[i];
+            int py = y + DY[i];
+            if (px < minX || py < minY || px >= maxX || py >= maxY) continue;
+
+            long predecessorKey = NodeTable.pack(px, py);
+            int predecessor = backwardNodes.find(predecessorKey);
+            if (predecessor >= 0 && tentativeGScore >= backwardNodes.g(predecessor)) continue;
+
+            // Lower bound on the cost from the start to the predecessor
+            double estimate = heuristic.estimate(startX, startY, px, py);
+            if (estimate == Double.POSITIVE_INFINITY) continue;
+
+            if (predecessor < 0) {
+                predecessor = backwardNodes.insert(predecessorKey);
+            } else {
+                backwardNodes.setClosed(predecessor, false);
+            }
+            backwardNodes.setG(predecessor, tentativeGScore);
+            backwardNodes.setParent(predecessor, current);
+            backwardOpen.insertOrDecrease(predecessor, tentativeGScore + estimate);
+
+            int other = forwardNodes.find(predecessorKey);
+            if (other >= 0) offerMeeting(other, predecessor);
+        }
+    }
+
+    private void offerMeeting(int forwardSlot, int backwardSlot) {
+        double cost = forwardNodes.g(forwardSlot) + backwardNodes.g(backwardSlot);
+        if (cost < bestCost) {
+            bestCost = cost;
+            meetForward = forwardSlot;
+            meetBackward = backwardSlot;
+        }
+    }
+
+    private List<Point> reconstructPath() {
+        List<Point> path = new ArrayList<>();
+        for (int slot = meetForward; slot >= 0; slot = forwardNodes.parent(slot)) {
+            long key = forwardNodes.key(slot);
+            path.add(new Point(NodeTable.unpackX(key), NodeTable.unpackY(key)));
+        }
+        Collections.reverse(path);
+        for (int slot = backwardNodes.parent(meetBackward); slot >= 0; slot = backwardNodes.parent(slot)) {
+            long key = backwardNodes.key(slot);
+            path.add(new Point(NodeTable.unpackX(key), NodeTable.unpackY(key)));
+        }
+        return path;
+    }
+}
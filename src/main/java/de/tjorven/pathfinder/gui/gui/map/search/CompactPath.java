@@ -0,0 +1,169 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+// A tile path stored as its first tile plus one 4-bit direction code per step, the codes index the 8-way offset
+// table of Movement. Two steps share a byte, so a path of n tiles takes about n / 2 bytes instead of n boxed Points.
+// Tiles are produced on the fly while iterating, and the same bytes serve as the wire format. Instances are immutable.
+public final class CompactPath implements Iterable<Point> {
+    private static final int[] DX = Movement.EIGHT.dx;
+    private static final int[] DY = Movement.EIGHT.dy;
+
+    private final int startX;
+    private final int startY;
+    private final int steps;
+    private final byte[] codes; // Step i is in the low nibble of byte i / 2 for even i, the high nibble for odd i
+    private final int endX;
+    private final int endY;
+
+    private CompactPath(int startX, int startY, int steps, byte[] codes) {
+        this.startX = startX;
+        this.startY = startY;
+        this.steps = steps;
+        this.codes = codes;
+        int x = startX;
+        int y = startY;
+        for (int i = 0; i < steps; i++) {
+            int code = code(i);
+            x += DX[code];
+            y += DY[code];
+        }
+        this.endX = x;
+        this.endY = y;
+    }
+
+    // Encodes a path whose consecutive tiles are neighbours, including diagonal ones
+    public static CompactPath of(List<Point> path) {
+        if (path.isEmpty()) throw new IllegalArgumentException("Empty path");
+        int steps = path.size() - 1;
+        byte[] codes = new byte[(steps + 1) / 2];
+        Point previous = path.get(0);
+        for (int i = 0; i < steps; i++) {
+            Point next = path.get(i + 1);
+            int code = directionCode(next.x - previous.x, next.y - previous.y);
+            if (code < 0) throw new IllegalArgumentException("Tiles " + previous + " and " + next + " are not neighbours");
+            codes[i >> 1] |= (byte) (code << ((i & 1) << 2));
+            previous = next;
+        }
+        Point start = path.get(0);
+        return new CompactPath(start.x, start.y, steps, codes);
+    }
+
+    // Reads a path written by writeTo
+    public static CompactPath readFrom(DataInput in) throws IOException {
+        int startX = in.readInt();
+        int startY = in.readInt();
+        int steps = in.readInt();
+        if (steps < 0) throw new IOException("Negative step count " + steps);
+        byte[] codes = new byte[(steps + 1) / 2];
+        in.readFully(codes);
+        for (int i = 0; i < steps; i++) {
+            int code = (codes[i >> 1] >> ((i & 1) << 2)) & 0xF;
+            if (code >= DX.length) throw new IOException("Invalid direction code " + code);
+        }
+        return new CompactPath(startX, startY, steps, codes);
+    }
+
+    // Start tile, step count and the packed direction codes, 12 bytes plus half a byte per step
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(startX);
+        out.writeInt(startY);
+        out.writeInt(steps);
+        out.write(codes);
+    }
+
+    // Number of tiles including start and end
+    public int length() {
+        return steps + 1;
+    }
+
+    public int getStartX() {
+        return startX;
+    }
+
+    public int getStartY() {
+        return startY;
+    }
+
+    public int getEndX() {
+        return endX;
+    }
+
+    public int getEndY() {
+        return endY;
+    }
+
+    // Whether the path takes diagonal steps, i.e. was found with 8-way movement
+    public boolean hasDiagonalSteps() {
+        for (int i = 0; i < steps; i++) {
+            int code = code(i);
+            if (DX[code] != 0 && DY[code] != 0) return true;
+        }
+        return false;
+    }
+
+    // Run-length compression: the packed keys (see NodeTable.pack) of the start, every tile where the
+    // direction changes and the end. Straight runs collapse to their two ends.
+    public long[] waypoints() {
+        long[] result = new long[16];
+        int count = 0;
+        result[count++] = NodeTable.pack(startX, startY);
+        int x = startX;
+        int y = startY;
+        for (int i = 0; i < steps; i++) {
+            int code = code(i);
+            x += DX[code];
+            y += DY[code];
+            if (i == steps - 1 || code(i + 1) != code) {
+                if (count == result.length) result = Arrays.copyOf(result, count * 2);
+                result[count++] = NodeTable.pack(x, y);
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    @Override
+    public Iterator<Point> iterator() {
+        return new Iterator<>() {
+            private int next; // Index of the next tile
+            private int x = startX;
+            private int y = startY;
+
+            @Override
+            public boolean hasNext() {
+                return next <= steps;
+            }
+
+            @Override
+            public Point next() {
+                if (next > steps) throw new NoSuchElementException();
+                if (next > 0) {
+                    int code = code(next - 1);
+                    x += DX[code];
+                    y += DY[code];
+                }
+                next++;
+                return new Point(x, y);
+            }
+        };
+    }
+
+    private int code(int step) {
+        return (codes[step >> 1] >> ((step & 1) << 2)) & 0xF;
+    }
+
+    // Index into the 8-way offset table, -1 if the offset is not a single move
+    private static int directionCode(int dx, int dy) {
+        for (int code = 0; code < DX.length; code++) {
+            if (DX[code] == dx && DY[code] == dy) return code;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,7 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+// Cost of stepping from one tile onto a neighbouring tile, Double.MAX_VALUE marks the step as impassable
+@FunctionalInterface
+public interface CostFunction {
+    double cost(int fromX, int fromY, int toX, int toY);
+}
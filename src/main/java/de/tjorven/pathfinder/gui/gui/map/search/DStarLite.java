@@ -0,0 +1,299 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// D* Lite (Koenig & Likhachev): searches backwards from the goal and keeps g and rhs values between queries.
+// As long as the goal stays the same, a new start or a terrain change only re-expands nodes whose distance to
+// the goal actually changed, so replanning cost follows the size of the change rather than the map.
+// Keys use Manhattan distance to the start, which stays consistent for costs of at least 1 per step.
+// An instance keeps its state between searches and is not thread-safe.
+public class DStarLite {
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+    private static final double INF = Double.POSITIVE_INFINITY;
+
+    private final NodeTable nodes = new NodeTable(); // g-score per node, untouched nodes have g = rhs = INF
+    private final IndexedMinHeap openSet = new IndexedMinHeap(); // Locally inconsistent nodes
+    private final TileCost tileCost;
+    private final int minX;
+    private final int minY;
+    private final int maxX; // Exclusive
+    private final int maxY; // Exclusive
+    private final List<Rectangle> pendingChanges = new ArrayList<>(); // Tile areas changed since the last search
+    private double[] rhs = new double[1024]; // One-step lookahead per node slot
+    private boolean planned;
+    private int goalX;
+    private int goalY;
+    private int lastStartX;
+    private int lastStartY;
+    private double keyModifier; // k_m, grows by the heuristic distance every time the start moves
+    private long expandedNodes;
+
+    public DStarLite(TileCost tileCost, int minX, int minY, int maxX, int maxY) {
+        this.tileCost = tileCost;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public List<Point> search(int startX, int startY, int goalX, int goalY) {
+        expandedNodes = 0;
+        if (!planned || goalX != this.goalX || goalY != this.goalY) {
+            reset();
+            planned = true;
+            this.goalX = goalX;
+            this.goalY = goalY;
+            int goal = insert(NodeTable.pack(goalX, goalY));
+            rhs[goal] = 0;
+            openSet.insertOrUpdate(goal, distance(startX, startY, goalX, goalY), 0);
+        } else {
+            keyModifier += distance(lastStartX, lastStartY, startX, startY);
+        }
+        lastStartX = startX;
+        lastStartY = startY;
+        openSet.resetPeakSize();
+
+        for (Rectangle area : pendingChanges) {
+            applyChange(area);
+        }
+        pendingChanges.clear();
+
+        int start = nodes.find(NodeTable.pack(startX, startY));
+        if (start < 0) start = insert(NodeTable.pack(startX, startY));
+        computeShortestPath(start, startX, startY);
+        return extractPath(start, startX, startY);
+    }
+
+    // Marks the costs of the tiles in this area as changed, max bounds are exclusive.
+    // The next search repairs the affected nodes, which is cheap while the area is small.
+    public void tilesChanged(int minX, int minY, int maxX, int maxY) {
+        if (planned) {
+            pendingChanges.add(new Rectangle(minX, minY, maxX - minX, maxY - minY));
+        }
+    }
+
+    // Forgets all search state, the next search starts from scratch
+    public void reset() {
+        nodes.clear();
+        openSet.clear();
+        pendingChanges.clear();
+        keyModifier = 0;
+        planned = false;
+    }
+
+    // Nodes expanded by the last search, including the repair of changed tiles
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    // Largest open set of the last search
+    public int getPeakOpenSetSize() {
+        return openSet.getPeakSize();
+    }
+
+    // Packed keys of every node with a known distance to the goal, kept across searches
+    public long[] getClosedNodes() {
+        int count = 0;
+        for (int slot = 0; slot < nodes.size(); slot++) {
+            if (nodes.g(slot) != INF) count++;
+        }
+        long[] result = new long[count];
+        int next = 0;
+        for (int slot = 0; slot < nodes.size(); slot++) {
+            if (nodes.g(slot) != INF) result[next++] = nodes.key(slot);
+        }
+        return result;
+    }
+
+    // Nodes whose search state is kept for the next query
+    public int getTouchedNodes() {
+        return nodes.size();
+    }
+
+    private void computeShortestPath(int start, int startX, int startY) {
+        while (!openSet.isEmpty()) {
+            int top = openSet.peek();
+            double startRhs = rhs[start];
+            double startG = nodes.g(start);
+            double startKey = Math.min(startG, startRhs) + keyModifier; // Heuristic from the start to itself is 0
+            double topKey = openSet.priority(top);
+            if (startRhs == startG && (topKey > startKey
+                    || (topKey == startKey && openSet.secondary(top) >= Math.min(startG, startRhs)))) {
+                break;
+            }
+
+            long key = nodes.key(top);
+            int x = NodeTable.unpackX(key);
+            int y = NodeTable.unpackY(key);
+            double g = nodes.g(top);
+            double r = rhs[top];
+            double k2 = Math.min(g, r);
+            double k1 = k2 + distance(startX, startY, x, y) + keyModifier;
+            if (topKey < k1 || (topKey == k1 && openSet.secondary(top) < k2)) {
+                openSet.insertOrUpdate(top, k1, k2); // Key is outdated since the start moved
+                continue;
+            }
+
+            openSet.remove(top);
+            expandedNodes++;
+            double entryCost = cost(x, y); // Every predecessor pays this to step onto the node
+            if (g > r) {
+                // Overconsistent: the node got cheaper, settle it and offer the new value to its predecessors
+                nodes.setG(top, r);
+                if (entryCost == INF) continue;
+                double offered = r + entryCost;
+                for (int i = 0; i < DX.length; i++) {
+                    int px = x + DX[i];
+                    int py = y + DY[i];
+                    if (!inBounds(px, py)) continue;
+                    int predecessor = findOrInsert(px, py);
+                    if (offered < rhs[predecessor]) {
+                        rhs[predecessor] = offered;
+                        updateVertex(predecessor, px, py, startX, startY);
+                    }
+                }
+            } else {
+                // Underconsistent: the node got more expensive, predecessors that relied on it look elsewhere
+                nodes.setG(top, INF);
+                double previous = g + entryCost;
+                for (int i = 0; i < DX.length; i++) {
+                    int px = x + DX[i];
+                    int py = y + DY[i];
+                    if (!inBounds(px, py)) continue;
+                    int predecessor = nodes.find(NodeTable.pack(px, py));
+                    if (predecessor >= 0 && rhs[predecessor] == previous) {
+                        recomputeRhs(predecessor, px, py);
+                        updateVertex(predecessor, px, py, startX, startY);
+                    }
+                }
+                recomputeRhs(top, x, y);
+                updateVertex(top, x, y, startX, startY);
+            }
+        }
+    }
+
+    // Changing the cost of a tile changes the edges into it, so its neighbours need a new lookahead
+    private void applyChange(Rectangle area) {
+        int fromX = Math.max(minX, area.x - 1);
+        int fromY = Math.max(minY, area.y - 1);
+        int toX = Math.min(maxX, area.x + area.width + 1);
+        int toY = Math.min(maxY, area.y + area.height + 1);
+        if (fromX >= toX || fromY >= toY) return;
+
+        if ((long) (toX - fromX) * (toY - fromY) <= nodes.size()) {
+            for (int x = fromX; x < toX; x++) {
+                for (int y = fromY; y < toY; y++) {
+                    int slot = nodes.find(NodeTable.pack(x, y));
+                    if (slot >= 0) repair(slot, x, y);
+                }
+            }
+        } else {
+            // Large areas, e.g. the whole window, are cheaper to handle by walking the touched nodes
+            for (int slot = 0; slot < nodes.size(); slot++) {
+                long key = nodes.key(slot);
+                int x = NodeTable.unpackX(key);
+                int y = NodeTable.unpackY(key);
+                if (x >= fromX && y >= fromY && x < toX && y < toY) repair(slot, x, y);
+            }
+        }
+    }
+
+    private void repair(int slot, int x, int y) {
+        recomputeRhs(slot, x, y);
+        updateVertex(slot, x, y, lastStartX, lastStartY);
+    }
+
+    private void recomputeRhs(int slot, int x, int y) {
+        if (x == goalX && y == goalY) return; // Stays 0
+        double best = INF;
+        for (int i = 0; i < DX.length; i++) {
+            int nx = x + DX[i];
+            int ny = y + DY[i];
+            if (!inBounds(nx, ny)) continue;
+            int successor = nodes.find(NodeTable.pack(nx, ny));
+            if (successor < 0) continue;
+            double g = nodes.g(successor);
+            if (g == INF) continue;
+            best = Math.min(best, g + cost(nx, ny));
+        }
+        rhs[slot] = best;
+    }
+
+    private void updateVertex(int slot, int x, int y, int startX, int startY) {
+        double g = nodes.g(slot);
+        double r = rhs[slot];
+        if (g != r) {
+            double k2 = Math.min(g, r);
+            openSet.insertOrUpdate(slot, k2 + distance(startX, startY, x, y) + keyModifier, k2);
+        } else {
+            openSet.remove(slot);
+        }
+    }
+
+    // Follows the cheapest successor from the start, null if the goal cannot be reached
+    private List<Point> extractPath(int start, int startX, int startY) {
+        if (nodes.g(start) == INF && rhs[start] == INF) return null;
+
+        List<Point> path = new ArrayList<>();
+        int x = startX;
+        int y = startY;
+        path.add(new Point(x, y));
+        while (x != goalX || y != goalY) {
+            if (path.size() > nodes.size()) return null; // Inconsistent state, should not happen
+            double best = INF;
+            int bestX = 0;
+            int bestY = 0;
+            for (int i = 0; i < DX.length; i++) {
+                int nx = x + DX[i];
+                int ny = y + DY[i];
+                if (!inBounds(nx, ny)) continue;
+                int successor = nodes.find(NodeTable.pack(nx, ny));
+                if (successor < 0 || nodes.g(successor) == INF) continue;
+                double total = nodes.g(successor) + cost(nx, ny);
+                if (total < best) {
+                    best = total;
+                    bestX = nx;
+                    bestY = ny;
+                }
+            }
+            if (best == INF) return null;
+            x = bestX;
+            y = bestY;
+            path.add(new Point(x, y));
+        }
+        return path;
+    }
+
+    private int findOrInsert(int x, int y) {
+        long key = NodeTable.pack(x, y);
+        int slot = nodes.find(key);
+        return slot >= 0 ? slot : insert(key);
+    }
+
+    private int insert(long key) {
+        int slot = nodes.insert(key);
+        nodes.setG(slot, INF);
+        if (slot >= rhs.length) {
+            rhs = Arrays.copyOf(rhs, rhs.length * 2);
+        }
+        rhs[slot] = INF;
+        return slot;
+    }
+
+    private double cost(int x, int y) {
+        double cost = tileCost.cost(x, y);
+        return cost >= Double.MAX_VALUE ? INF : cost;
+    }
+
+    private boolean inBounds(int x, int y) {
+        return x >= minX && y >= minY && x < maxX && y < maxY;
+    }
+
+    private static double distance(int x1, int y1, int x2, int y2) {
+        return Math.abs(x1 - x2) + Math.abs(y1 - y2);
+    }
+}
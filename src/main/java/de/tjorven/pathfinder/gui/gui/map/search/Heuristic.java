@@ -0,0 +1,7 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+// Admissible estimate of the remaining cost from a tile to the goal
+@FunctionalInterface
+public interface Heuristic {
+    double estimate(int x, int y, int goalX, int goalY);
+}
@@ -0,0 +1,329 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// HPA*: every section is a cluster. Passable openings along cluster borders become transition tiles, and the
+// costs between the transitions of one cluster are computed once and cached. A query runs A* over the
+// transitions only and then refines each abstract step with a tile-level A* inside a single cluster.
+// Paths are near-optimal, only the transitions chosen per opening restrict the route.
+// An instance caches its abstract graph and is not thread-safe.
+public class HierarchicalPathfinder {
+    private static final int TRANSITION_SPACING = 5; // Max tiles between transitions along an opening
+
+    private final CostFunction costFunction;
+    private final int clusterSize;
+    private final Rectangle clusterBounds; // Clusters the search may enter, in section coordinates
+    private final Map<Point, Cluster> clusters = new HashMap<>();
+    private final AStarSearch refiner;
+
+    // Abstract search state, reused between queries
+    private final NodeTable nodes = new NodeTable();
+    private final IndexedMinHeap openSet = new IndexedMinHeap();
+
+    // Dijkstra buffers for a single cluster
+    private final double[] clusterDistances;
+    private final IndexedMinHeap clusterQueue = new IndexedMinHeap();
+
+    public HierarchicalPathfinder(CostFunction costFunction, int clusterSize, Rectangle clusterBounds) {
+        this.costFunction = costFunction;
+        this.clusterSize = clusterSize;
+        this.clusterBounds = new Rectangle(clusterBounds);
+        this.clusterDistances = new double[clusterSize * clusterSize];
+        this.refiner = new AStarSearch(costFunction, HierarchicalPathfinder::manhattan,
+                clusterBounds.x * clusterSize, clusterBounds.y * clusterSize,
+                (clusterBounds.x + clusterBounds.width) * clusterSize, (clusterBounds.y + clusterBounds.height) * clusterSize);
+    }
+
+    public List<Point> search(int startX, int startY, int goalX, int goalY) {
+        Point startCluster = clusterOf(startX, startY);
+        Point goalCluster = clusterOf(goalX, goalY);
+        if (!clusterBounds.contains(startCluster) || !clusterBounds.contains(goalCluster)) return null;
+
+        long startKey = NodeTable.pack(startX, startY);
+        long goalKey = NodeTable.pack(goalX, goalY);
+
+        // Connect start and goal to the transitions of their clusters
+        Cluster startGraph = cluster(startCluster);
+        Cluster goalGraph = cluster(goalCluster);
+        double[] fromStart = transitionDistances(startGraph, startX, startY, false);
+        double startToGoal = startCluster.equals(goalCluster)
+                ? clusterDistances[localIndex(goalX, goalY)] : Double.MAX_VALUE; // Direct route inside one cluster
+        double[] toGoal = transitionDistances(goalGraph, goalX, goalY, true);
+
+        nodes.clear();
+        openSet.clear();
+        int start = nodes.insert(startKey);
+        nodes.setG(start, 0);
+        openSet.insertOrDecrease(start, manhattan(startX, startY, goalX, goalY));
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.poll();
+            long currentKey = nodes.key(current);
+            if (currentKey == goalKey) {
+                return refine(current);
+            }
+            nodes.setClosed(current, true);
+
+            int x = NodeTable.unpackX(currentKey);
+            int y = NodeTable.unpackY(currentKey);
+            double g = nodes.g(current);
+            Point clusterKey = clusterOf(x, y);
+            Cluster cluster = cluster(clusterKey);
+            int transition = cluster.indexOf(currentKey);
+            boolean inGoalCluster = clusterKey.equals(goalCluster);
+
+            // Intra-cluster edges
+            if (transition >= 0) {
+                for (int j = 0; j < cluster.transitions.length; j++) {
+                    relax(current, g, cluster.transitions[j], cluster.distance(transition, j), goalX, goalY);
+                }
+                if (inGoalCluster) {
+                    relax(current, g, goalKey, toGoal[transition], goalX, goalY);
+                }
+            }
+            if (currentKey == startKey) {
+                for (int j = 0; j < startGraph.transitions.length; j++) {
+                    relax(current, g, startGraph.transitions[j], fromStart[j], goalX, goalY);
+                }
+                relax(current, g, goalKey, startToGoal, goalX, goalY);
+            }
+
+            // Inter-cluster edges, transitions are placed in pairs on both sides of a border
+            if (transition >= 0) {
+                for (int d = 0; d < 4; d++) {
+                    int nx = x + (d == 0 ? -1 : d == 1 ? 1 : 0);
+                    int ny = y + (d == 2 ? -1 : d == 3 ? 1 : 0);
+                    Point neighborCluster = clusterOf(nx, ny);
+                    if (neighborCluster.equals(clusterKey) || !clusterBounds.contains(neighborCluster)) continue;
+                    long neighborKey = NodeTable.pack(nx, ny);
+                    if (cluster(neighborCluster).indexOf(neighborKey) < 0 && neighborKey != goalKey) continue;
+                    relax(current, g, neighborKey, costFunction.cost(x, y, nx, ny), goalX, goalY);
+                }
+            }
+        }
+
+        return null; // No path found
+    }
+
+    // Drops the cached graph of a regenerated section, its neighbours share border transitions with it
+    public void invalidate(Point sectionKey) {
+        clusters.remove(sectionKey);
+        clusters.remove(new Point(sectionKey.x - 1, sectionKey.y));
+        clusters.remove(new Point(sectionKey.x + 1, sectionKey.y));
+        clusters.remove(new Point(sectionKey.x, sectionKey.y - 1));
+        clusters.remove(new Point(sectionKey.x, sectionKey.y + 1));
+    }
+
+    public void invalidateAll() {
+        clusters.clear();
+    }
+
+    private void relax(int current, double g, long neighborKey, double edgeCost, int goalX, int goalY) {
+        if (edgeCost >= Double.MAX_VALUE) return;
+        int neighbor = nodes.find(neighborKey);
+        if (neighbor >= 0 && nodes.isClosed(neighbor)) return;
+
+        double tentativeGScore = g + edgeCost;
+        if (neighbor < 0) {
+            neighbor = nodes.insert(neighborKey);
+        } else if (tentativeGScore >= nodes.g(neighbor)) {
+            return;
+        }
+
+        nodes.setG(neighbor, tentativeGScore);
+        nodes.setParent(neighbor, current);
+        int nx = NodeTable.unpackX(neighborKey);
+        int ny = NodeTable.unpackY(neighborKey);
+        openSet.insertOrDecrease(neighbor, tentativeGScore + manhattan(nx, ny, goalX, goalY));
+    }
+
+    // Turns the abstract path into tiles, every abstract step stays inside one cluster or crosses one border
+    private List<Point> refine(int goal) {
+        List<Long> waypoints = new ArrayList<>();
+        for (int slot = goal; slot >= 0; slot = nodes.parent(slot)) {
+            waypoints.add(nodes.key(slot));
+        }
+
+        List<Point> path = new ArrayList<>();
+        long first = waypoints.get(waypoints.size() - 1);
+        path.add(new Point(NodeTable.unpackX(first), NodeTable.unpackY(first)));
+
+        for (int i = waypoints.size() - 1; i > 0; i--) {
+            long from = waypoints.get(i);
+            long to = waypoints.get(i - 1);
+            int fromX = NodeTable.unpackX(from);
+            int fromY = NodeTable.unpackY(from);
+            int toX = NodeTable.unpackX(to);
+            int toY = NodeTable.unpackY(to);
+
+            Point cluster = clusterOf(fromX, fromY);
+            if (!cluster.equals(clusterOf(toX, toY))) {
+                path.add(new Point(toX, toY));
+                continue;
+            }
+
+            int minX = cluster.x * clusterSize;
+            int minY = cluster.y * clusterSize;
+            List<Point> segment = refiner.search(fromX, fromY, toX, toY, minX, minY, minX + clusterSize, minY + clusterSize);
+            if (segment == null) return null; // Terrain changed since the cluster was cached
+            path.addAll(segment.subList(1, segment.size()));
+        }
+
+        return path;
+    }
+
+    private Cluster cluster(Point clusterKey) {
+        Cluster cluster = clusters.get(clusterKey);
+        if (cluster == null) {
+            cluster = buildCluster(clusterKey);
+            clusters.put(clusterKey, cluster);
+        }
+        return cluster;
+    }
+
+    private Cluster buildCluster(Point clusterKey) {
+        int minX = clusterKey.x * clusterSize;
+        int minY = clusterKey.y * clusterSize;
+        int maxX = minX + clusterSize - 1;
+        int maxY = minY + clusterSize - 1;
+
+        List<Long> transitions = new ArrayList<>();
+        if (clusterBounds.contains(clusterKey.x - 1, clusterKey.y)) {
+            addEntrances(transitions, minX, minY, 0, 1, -1, 0);
+        }
+        if (clusterBounds.contains(clusterKey.x + 1, clusterKey.y)) {
+            addEntrances(transitions, maxX, minY, 0, 1, 1, 0);
+        }
+        if (clusterBounds.contains(clusterKey.x, clusterKey.y - 1)) {
+            addEntrances(transitions, minX, minY, 1, 0, 0, -1);
+        }
+        if (clusterBounds.contains(clusterKey.x, clusterKey.y + 1)) {
+            addEntrances(transitions, minX, maxY, 1, 0, 0, 1);
+        }
+
+        long[] keys = transitions.stream().mapToLong(Long::longValue).distinct().toArray();
+        int n = keys.length;
+        double[] distances = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            double[] row = transitionDistances(keys, NodeTable.unpackX(keys[i]), NodeTable.unpackY(keys[i]), false);
+            System.arraycopy(row, 0, distances, i * n, n);
+        }
+        return new Cluster(keys, distances);
+    }
+
+    // Scans one border of length clusterSize starting at (x, y) along (stepX, stepY). A border tile is an
+    // opening when it and its neighbour across the border at (outX, outY) are both passable.
+    // Both clusters sharing the border compute the same runs, so transitions always come in pairs.
+    private void addEntrances(List<Long> transitions, int x, int y, int stepX, int stepY, int outX, int outY) {
+        int runStart = -1;
+        for (int i = 0; i <= clusterSize; i++) {
+            int tx = x + stepX * i;
+            int ty = y + stepY * i;
+            boolean open = i < clusterSize
+                    && costFunction.cost(tx, ty, tx + outX, ty + outY) < Double.MAX_VALUE
+                    && costFunction.cost(tx + outX, ty + outY, tx, ty) < Double.MAX_VALUE;
+
+            if (open && runStart < 0) {
+                runStart = i;
+            } else if (!open && runStart >= 0) {
+                int runEnd = i - 1;
+                if (runEnd - runStart + 1 <= TRANSITION_SPACING) {
+                    int middle = (runStart + runEnd) / 2;
+                    transitions.add(NodeTable.pack(x + stepX * middle, y + stepY * middle));
+                } else {
+                    // Terrain cost varies along the border, so long openings get evenly spaced transitions
+                    int count = (runEnd - runStart) / TRANSITION_SPACING + 1;
+                    for (int k = 0; k <= count; k++) {
+                        int offset = runStart + (runEnd - runStart) * k / count;
+                        transitions.add(NodeTable.pack(x + stepX * offset, y + stepY * offset));
+                    }
+                }
+                runStart = -1;
+            }
+        }
+    }
+
+    private double[] transitionDistances(Cluster cluster, int x, int y, boolean reverse) {
+        return transitionDistances(cluster.transitions, x, y, reverse);
+    }
+
+    // Dijkstra inside the cluster of (x, y). Forward gives the cost from (x, y) to each target, reverse the cost
+    // from each target to (x, y). Leaves the per-tile distances in clusterDistances.
+    private double[] transitionDistances(long[] targets, int x, int y, boolean reverse) {
+        Point clusterKey = clusterOf(x, y);
+        int minX = clusterKey.x * clusterSize;
+        int minY = clusterKey.y * clusterSize;
+
+        Arrays.fill(clusterDistances, Double.MAX_VALUE);
+        clusterQueue.clear();
+        int source = localIndex(x, y);
+        clusterDistances[source] = 0;
+        clusterQueue.insertOrDecrease(source, 0);
+
+        while (!clusterQueue.isEmpty()) {
+            int index = clusterQueue.poll();
+            int cx = minX + index % clusterSize;
+            int cy = minY + index / clusterSize;
+            double distance = clusterDistances[index];
+
+            for (int d = 0; d < 4; d++) {
+                int nx = cx + (d == 0 ? -1 : d == 1 ? 1 : 0);
+                int ny = cy + (d == 2 ? -1 : d == 3 ? 1 : 0);
+                if (nx < minX || ny < minY || nx >= minX + clusterSize || ny >= minY + clusterSize) continue;
+
+                double step = reverse ? costFunction.cost(nx, ny, cx, cy) : costFunction.cost(cx, cy, nx, ny);
+                if (step >= Double.MAX_VALUE) continue;
+                int neighbor = (ny - minY) * clusterSize + (nx - minX);
+                double tentative = distance + step;
+                if (tentative < clusterDistances[neighbor]) {
+                    clusterDistances[neighbor] = tentative;
+                    clusterQueue.insertOrDecrease(neighbor, tentative);
+                }
+            }
+        }
+
+        double[] result = new double[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            result[i] = clusterDistances[localIndex(NodeTable.unpackX(targets[i]), NodeTable.unpackY(targets[i]))];
+        }
+        return result;
+    }
+
+    private int localIndex(int x, int y) {
+        return Math.floorMod(y, clusterSize) * clusterSize + Math.floorMod(x, clusterSize);
+    }
+
+    private Point clusterOf(int x, int y) {
+        return new Point(Math.floorDiv(x, clusterSize), Math.floorDiv(y, clusterSize));
+    }
+
+    private static double manhattan(int x, int y, int goalX, int goalY) {
+        return Math.abs(x - goalX) + Math.abs(y - goalY);
+    }
+
+    private static final class Cluster {
+        private final long[] transitions; // Packed tile coordinates
+        private final double[] distances; // Row-major cost matrix between transitions, MAX_VALUE if unreachable
+
+        private Cluster(long[] transitions, double[] distances) {
+            this.transitions = transitions;
+            this.distances = distances;
+        }
+
+        private double distance(int from, int to) {
+            return distances[from * transitions.length + to];
+        }
+
+        private int indexOf(long key) {
+            for (int i = 0; i < transitions.length; i++) {
+                if (transitions[i] == key) return i;
+            }
+            return -1;
+        }
+    }
+}
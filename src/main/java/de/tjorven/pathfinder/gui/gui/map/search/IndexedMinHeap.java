@@ -0,0 +1,179 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.util.Arrays;
+
+// Binary min-heap over node slots with an index so priorities can be changed in place.
+// Equal priorities are ordered by an optional secondary priority, which stays 0 for insertOrDecrease.
+public class IndexedMinHeap {
+    private static final int ABSENT = -1;
+
+    private int[] heap = new int[1024];
+    private int[] position = new int[1024]; // Heap position per slot or ABSENT
+    private double[] priority = new double[1024]; // Priority per slot
+    private double[] secondary = new double[1024]; // Tie-break per slot
+    private int size;
+    private int peakSize; // Largest size since the last clear or resetPeakSize
+
+    public IndexedMinHeap() {
+        Arrays.fill(position, ABSENT);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getPeakSize() {
+        return peakSize;
+    }
+
+    public void resetPeakSize() {
+        peakSize = size;
+    }
+
+    public boolean contains(int slot) {
+        return slot < position.length && position[slot] != ABSENT;
+    }
+
+    public double peekPriority() {
+        return priority[heap[0]];
+    }
+
+    public double priority(int slot) {
+        return priority[slot];
+    }
+
+    public double secondary(int slot) {
+        return secondary[slot];
+    }
+
+    public int peek() {
+        return heap[0];
+    }
+
+    // Inserts the slot or lowers its priority if it is already queued
+    public void insertOrDecrease(int slot, double value) {
+        ensureSlot(slot);
+        int pos = position[slot];
+        if (pos == ABSENT) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            pos = size++;
+            heap[pos] = slot;
+            position[slot] = pos;
+            if (size > peakSize) peakSize = size;
+        } else if (value >= priority[slot]) {
+            return;
+        }
+        priority[slot] = value;
+        secondary[slot] = 0;
+        siftUp(pos);
+    }
+
+    // Inserts the slot or moves it to the new priority in either direction
+    public void insertOrUpdate(int slot, double value, double tieBreak) {
+        ensureSlot(slot);
+        int pos = position[slot];
+        if (pos == ABSENT) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            pos = size++;
+            heap[pos] = slot;
+            position[slot] = pos;
+            if (size > peakSize) peakSize = size;
+        }
+        priority[slot] = value;
+        secondary[slot] = tieBreak;
+        siftUp(pos);
+        siftDown(position[slot]);
+    }
+
+    // Removes the slot if it is queued
+    public void remove(int slot) {
+        if (!contains(slot)) return;
+        int pos = position[slot];
+        position[slot] = ABSENT;
+        size--;
+        if (pos < size) {
+            int last = heap[size];
+            heap[pos] = last;
+            position[last] = pos;
+            siftUp(pos);
+            siftDown(position[last]);
+        }
+    }
+
+    public int poll() {
+        int top = heap[0];
+        position[top] = ABSENT;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = ABSENT;
+        }
+        size = 0;
+        peakSize = 0;
+    }
+
+    private void ensureSlot(int slot) {
+        if (slot >= position.length) {
+            int oldLength = position.length;
+            int capacity = Math.max(oldLength * 2, slot + 1);
+            position = Arrays.copyOf(position, capacity);
+            Arrays.fill(position, oldLength, capacity, ABSENT);
+            priority = Arrays.copyOf(priority, capacity);
+            secondary = Arrays.copyOf(secondary, capacity);
+        }
+    }
+
+    private void siftUp(int pos) {
+        int slot = heap[pos];
+        while (pos > 0) {
+            int parentPos = (pos - 1) >>> 1;
+            int parentSlot = heap[parentPos];
+            if (!less(slot, parentSlot)) break;
+            heap[pos] = parentSlot;
+            position[parentSlot] = pos;
+            pos = parentPos;
+        }
+        heap[pos] = slot;
+        position[slot] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int slot = heap[pos];
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && less(heap[right], heap[child])) {
+                child = right;
+            }
+            int childSlot = heap[child];
+            if (!less(childSlot, slot)) break;
+            heap[pos] = childSlot;
+            position[childSlot] = pos;
+            pos = child;
+        }
+        heap[pos] = slot;
+        position[slot] = pos;
+    }
+
+    private boolean less(int a, int b) {
+        return priority[a] < priority[b] || (priority[a] == priority[b] && secondary[a] < secondary[b]);
+    }
+}
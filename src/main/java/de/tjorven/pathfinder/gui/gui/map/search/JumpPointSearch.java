@@ -0,0 +1,198 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// Jump point search for 4-connected grids with per-tile costs. Tile costs are rounded up to classes of width
+// tolerance. Inside an area of one class, all monotone routes cost the same, so only one canonical route is
+// expanded. Horizontal runs jump straight ahead and turn only where they are forced to. A turn north or south is
+// forced when the tile beside the previous step is impassable or in a more expensive class. Vertical runs may
+// turn at every tile, so each step scans sideways for jump points.
+// Steps cost at least 1, so the returned path costs at most (1 + tolerance) times the optimum.
+// A tolerance of 0 keeps the exact costs. An instance reuses its buffers and is not thread-safe.
+public class JumpPointSearch {
+    private final NodeTable nodes = new NodeTable();
+    private final IndexedMinHeap openSet = new IndexedMinHeap();
+    private final TileCost tileCost;
+    private final int minX;
+    private final int minY;
+    private final int maxX; // Exclusive
+    private final int maxY; // Exclusive
+    private double classWidth;
+    private int goalX;
+    private int goalY;
+    private double jumpCost; // Cost accumulated by the last successful jump
+    private long expandedNodes;
+
+    public JumpPointSearch(TileCost tileCost, int minX, int minY, int maxX, int maxY) {
+        this.tileCost = tileCost;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    public List<Point> search(int startX, int startY, int goalX, int goalY, double tolerance) {
+        this.classWidth = tolerance;
+        this.goalX = goalX;
+        this.goalY = goalY;
+        nodes.clear();
+        openSet.clear();
+        expandedNodes = 0;
+
+        long goalKey = NodeTable.pack(goalX, goalY);
+        int start = nodes.insert(NodeTable.pack(startX, startY));
+        nodes.setG(start, 0);
+        openSet.insertOrDecrease(start, heuristic(startX, startY));
+
+        while (!openSet.isEmpty()) {
+            int current = openSet.poll();
+            long currentKey = nodes.key(current);
+            if (currentKey == goalKey) {
+                return reconstructPath(current);
+            }
+            nodes.setClosed(current, true);
+            expandedNodes++;
+
+            int x = NodeTable.unpackX(currentKey);
+            int y = NodeTable.unpackY(currentKey);
+            int parent = nodes.parent(current);
+            if (parent < 0) {
+                // The start expands in every direction
+                expand(current, x, y, -1, 0);
+                expand(current, x, y, 1, 0);
+                expand(current, x, y, 0, -1);
+                expand(current, x, y, 0, 1);
+                continue;
+            }
+
+            long parentKey = nodes.key(parent);
+            int dx = Integer.signum(x - NodeTable.unpackX(parentKey));
+            int dy = Integer.signum(y - NodeTable.unpackY(parentKey));
+            if (dx != 0) {
+                expand(current, x, y, dx, 0);
+                if (forced(x, y, dx, -1)) expand(current, x, y, 0, -1);
+                if (forced(x, y, dx, 1)) expand(current, x, y, 0, 1);
+            } else {
+                expand(current, x, y, 0, dy);
+                expand(current, x, y, -1, 0);
+                expand(current, x, y, 1, 0);
+            }
+        }
+
+        return null; // No path found
+    }
+
+    // Nodes expanded by the last search
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    // Largest open set of the last search
+    public int getPeakOpenSetSize() {
+        return openSet.getPeakSize();
+    }
+
+    // Packed keys of the nodes the last search expanded
+    public long[] getClosedNodes() {
+        return nodes.closedKeys();
+    }
+
+    private void expand(int current, int x, int y, int dx, int dy) {
+        long jumpPoint = jump(x, y, dx, dy);
+        if (jumpPoint == Long.MIN_VALUE) return;
+
+        int neighbor = nodes.find(jumpPoint);
+        if (neighbor >= 0 && nodes.isClosed(neighbor)) return;
+
+        double tentativeGScore = nodes.g(current) + jumpCost;
+        if (neighbor < 0) {
+            neighbor = nodes.insert(jumpPoint);
+        } else if (tentativeGScore >= nodes.g(neighbor)) {
+            return;
+        }
+
+        nodes.setG(neighbor, tentativeGScore);
+        nodes.setParent(neighbor, current);
+        openSet.insertOrDecrease(neighbor, tentativeGScore + heuristic(NodeTable.unpackX(jumpPoint), NodeTable.unpackY(jumpPoint)));
+    }
+
+    // Walks from (x, y) in one direction until a jump point, returns its packed key or Long.MIN_VALUE at a dead end.
+    // The cost of the walk is left in jumpCost.
+    private long jump(int x, int y, int dx, int dy) {
+        double cost = 0;
+        while (true) {
+            int nx = x + dx;
+            int ny = y + dy;
+            double step = classCost(nx, ny);
+            if (step >= Double.MAX_VALUE) return Long.MIN_VALUE;
+            cost += step;
+
+            if ((nx == goalX && ny == goalY)
+                    || (dx != 0 && (forced(nx, ny, dx, -1) || forced(nx, ny, dx, 1)))
+                    || (dy != 0 && (scan(nx, ny, -1) || scan(nx, ny, 1)))) {
+                jumpCost = cost;
+                return NodeTable.pack(nx, ny);
+            }
+            x = nx;
+            y = ny;
+        }
+    }
+
+    // Horizontal scan used while jumping vertically, true if turning sideways at (x, y) leads to a jump point
+    private boolean scan(int x, int y, int dx) {
+        while (true) {
+            int nx = x + dx;
+            if (classCost(nx, y) >= Double.MAX_VALUE) return false;
+            if ((nx == goalX && y == goalY) || forced(nx, y, dx, -1) || forced(nx, y, dx, 1)) return true;
+            x = nx;
+        }
+    }
+
+    // Turning from a horizontal run at (x, y) towards dy is only needed if the same turn one tile earlier
+    // is blocked or more expensive
+    private boolean forced(int x, int y, int dx, int dy) {
+        double side = classCost(x, y + dy);
+        if (side >= Double.MAX_VALUE) return false;
+        double earlierSide = classCost(x - dx, y + dy);
+        return earlierSide >= Double.MAX_VALUE || earlierSide > classCost(x, y);
+    }
+
+    private double classCost(int x, int y) {
+        if (x < minX || y < minY || x >= maxX || y >= maxY) return Double.MAX_VALUE;
+        double cost = tileCost.cost(x, y);
+        if (classWidth <= 0 || cost >= Double.MAX_VALUE) return cost;
+        return Math.ceil(cost / classWidth) * classWidth;
+    }
+
+    private double heuristic(int x, int y) {
+        return Math.abs(x - goalX) + Math.abs(y - goalY); // Manhattan distance
+    }
+
+    // Fills in the straight segments between consecutive jump points
+    private List<Point> reconstructPath(int goal) {
+        List<Long> jumpPoints = new ArrayList<>();
+        for (int slot = goal; slot >= 0; slot = nodes.parent(slot)) {
+            jumpPoints.add(nodes.key(slot));
+        }
+
+        List<Point> path = new ArrayList<>();
+        long first = jumpPoints.get(jumpPoints.size() - 1);
+        int x = NodeTable.unpackX(first);
+        int y = NodeTable.unpackY(first);
+        path.add(new Point(x, y));
+        for (int i = jumpPoints.size() - 2; i >= 0; i--) {
+            int toX = NodeTable.unpackX(jumpPoints.get(i));
+            int toY = NodeTable.unpackY(jumpPoints.get(i));
+            int dx = Integer.signum(toX - x);
+            int dy = Integer.signum(toY - y);
+            while (x != toX || y != toY) {
+                x += dx;
+                y += dy;
+                path.add(new Point(x, y));
+            }
+        }
+        return path;
+    }
+}
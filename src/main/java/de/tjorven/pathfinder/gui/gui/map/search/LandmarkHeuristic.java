@@ -0,0 +1,351 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// ALT heuristic: exact distances from a few landmarks give lower bounds through the triangle inequality.
+// A step costs the target tile's entry cost, so reversing a path only swaps which end tile is paid for:
+// d(n, L) = d(L, n) - c(n) + c(L). One forward Dijkstra per landmark therefore gives both
+//   d(n, g) >= d(L, g) - d(L, n)   and   d(n, g) >= d(L, n) - d(L, g) + c(g) - c(n).
+// Distances are stored as floats per tile together with the direction to the tile's parent in the shortest
+// path tree, which lets repair() update only the part of a table affected by changed tiles.
+// Queries cache goal data and go through the tile cost, so an instance is not thread-safe.
+public class LandmarkHeuristic implements Heuristic {
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+    private static final byte NO_PARENT = -1;
+    private static final int FILE_MAGIC = 0x414C5431; // "ALT1"
+
+    private TileCost tileCost;
+    private final int minX;
+    private final int minY;
+    private final int width;
+    private final int height;
+    private final int[] landmarks; // Tile indices
+    private final float[][] distances; // Per landmark, +Infinity where unreachable
+    private final byte[][] parents; // Per landmark, index into DX/DY towards the parent tile
+    private double slack; // Subtracted from landmark bounds to absorb float rounding
+    private boolean[] invalid; // Repair scratch, one flag per tile, all false between repairs
+
+    // Goal-dependent values, recomputed when the goal changes
+    private long cachedGoal = Long.MIN_VALUE;
+    private final double[] goalDistances;
+    private double goalCost;
+
+    private LandmarkHeuristic(TileCost tileCost, int minX, int minY, int width, int height, int landmarkCount) {
+        this.tileCost = tileCost;
+        this.minX = minX;
+        this.minY = minY;
+        this.width = width;
+        this.height = height;
+        this.landmarks = new int[landmarkCount];
+        this.distances = new float[landmarkCount][];
+        this.parents = new byte[landmarkCount][];
+        this.goalDistances = new double[landmarkCount];
+    }
+
+    // Picks landmarks by farthest-point selection over the window and runs one Dijkstra per landmark.
+    // Loads every section of the window, so run it off the EDT.
+    public static LandmarkHeuristic build(TileCost tileCost, int minX, int minY, int maxX, int maxY, int landmarkCount) {
+        LandmarkHeuristic heuristic = new LandmarkHeuristic(tileCost, minX, minY, maxX - minX, maxY - minY, landmarkCount);
+        heuristic.buildAll();
+        return heuristic;
+    }
+
+    @Override
+    public double estimate(int x, int y, int goalX, int goalY) {
+        double manhattan = Math.abs(x - goalX) + Math.abs(y - goalY);
+        if (!contains(x, y) || !contains(goalX, goalY)) return manhattan;
+
+        long goalKey = NodeTable.pack(goalX, goalY);
+        if (goalKey != cachedGoal) {
+            int goalIndex = index(goalX, goalY);
+            for (int l = 0; l < landmarks.length; l++) {
+                goalDistances[l] = distances[l][goalIndex];
+            }
+            goalCost = tileCost.cost(goalX, goalY);
+            cachedGoal = goalKey;
+        }
+
+        int index = index(x, y);
+        double tileCostHere = Double.NaN;
+        double best = manhattan;
+        for (int l = 0; l < landmarks.length; l++) {
+            double toNode = distances[l][index];
+            double toGoal = goalDistances[l];
+            if (toNode == Double.POSITIVE_INFINITY || toGoal == Double.POSITIVE_INFINITY) {
+                // Passable tiles reach each other in both directions, so one side being reachable from the
+                // landmark and the other not means they lie in different components. A search may still start
+                // on an impassable tile, which is never reached but can be left.
+                if (Double.isNaN(tileCostHere)) tileCostHere = tileCost.cost(x, y);
+                if (toNode != toGoal && tileCostHere < Double.MAX_VALUE) return Double.POSITIVE_INFINITY;
+                continue;
+            }
+            best = Math.max(best, toGoal - toNode - slack);
+            if (toNode > toGoal) {
+                if (Double.isNaN(tileCostHere)) tileCostHere = tileCost.cost(x, y);
+                best = Math.max(best, toNode - toGoal + goalCost - tileCostHere - slack);
+            }
+        }
+        return best;
+    }
+
+    // Recomputes the tables after the costs of the tiles in the given rectangle changed (max bounds exclusive).
+    // Only tiles whose shortest path from a landmark runs through the rectangle, or that get cheaper, are touched.
+    public void repair(int changedMinX, int changedMinY, int changedMaxX, int changedMaxY) {
+        int fromX = Math.max(changedMinX, minX);
+        int fromY = Math.max(changedMinY, minY);
+        int toX = Math.min(changedMaxX, minX + width);
+        int toY = Math.min(changedMaxY, minY + height);
+        if (fromX >= toX || fromY >= toY) return;
+
+        for (int l = 0; l < landmarks.length; l++) {
+            repairLandmark(l, fromX, fromY, toX, toY);
+        }
+        updateSlack();
+        cachedGoal = Long.MIN_VALUE;
+    }
+
+    // Tile costs used by queries and repairs, e.g. to hand a table built on another thread to a search
+    public void setTileCost(TileCost tileCost) {
+        this.tileCost = tileCost;
+        cachedGoal = Long.MIN_VALUE;
+    }
+
+    public int getLandmarkCount() {
+        return landmarks.length;
+    }
+
+    public void save(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(6 * Integer.BYTES + landmarks.length * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(FILE_MAGIC).putInt(minX).putInt(minY).putInt(width).putInt(height).putInt(landmarks.length);
+            for (int landmark : landmarks) header.putInt(landmark);
+            writeFully(channel, header.flip());
+
+            ByteBuffer table = ByteBuffer.allocate(width * height * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int l = 0; l < landmarks.length; l++) {
+                table.clear();
+                table.asFloatBuffer().put(distances[l]);
+                writeFully(channel, table);
+                writeFully(channel, ByteBuffer.wrap(parents[l]));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Returns null if the file is missing, unreadable or was built for a different window
+    public static LandmarkHeuristic load(File file, TileCost tileCost, int minX, int minY, int maxX, int maxY) {
+        if (!file.exists()) return null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(6 * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, header);
+            header.flip();
+            if (header.getInt() != FILE_MAGIC || header.getInt() != minX || header.getInt() != minY
+                    || header.getInt() != maxX - minX || header.getInt() != maxY - minY) {
+                return null;
+            }
+
+            int landmarkCount = header.getInt();
+            LandmarkHeuristic heuristic = new LandmarkHeuristic(tileCost, minX, minY, maxX - minX, maxY - minY, landmarkCount);
+            ByteBuffer landmarkBuffer = ByteBuffer.allocate(landmarkCount * Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            readFully(channel, landmarkBuffer);
+            landmarkBuffer.flip().asIntBuffer().get(heuristic.landmarks);
+
+            int tiles = heuristic.width * heuristic.height;
+            ByteBuffer table = ByteBuffer.allocate(tiles * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            for (int l = 0; l < landmarkCount; l++) {
+                table.clear();
+                readFully(channel, table);
+                heuristic.distances[l] = new float[tiles];
+                table.flip().asFloatBuffer().get(heuristic.distances[l]);
+                heuristic.parents[l] = new byte[tiles];
+                readFully(channel, ByteBuffer.wrap(heuristic.parents[l]));
+            }
+            heuristic.updateSlack();
+            return heuristic;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void buildAll() {
+        int tiles = width * height;
+        for (int l = 0; l < landmarks.length; l++) {
+            landmarks[l] = l == 0 ? firstLandmark() : farthestTile(l);
+            distances[l] = new float[tiles];
+            parents[l] = new byte[tiles];
+            Arrays.fill(distances[l], Float.POSITIVE_INFINITY);
+            Arrays.fill(parents[l], NO_PARENT);
+
+            IndexedMinHeap queue = new IndexedMinHeap();
+            distances[l][landmarks[l]] = 0;
+            queue.insertOrDecrease(landmarks[l], 0);
+            dijkstra(l, queue);
+        }
+        updateSlack();
+    }
+
+    // First passable tile, scanning from the window corner
+    private int firstLandmark() {
+        for (int index = 0; index < width * height; index++) {
+            if (tileCost.cost(minX + index % width, minY + index / width) < Double.MAX_VALUE) return index;
+        }
+        return 0;
+    }
+
+    // Passable tile with the largest distance to its closest landmark so far, unreachable tiles first
+    private int farthestTile(int chosen) {
+        int best = landmarks[0];
+        double bestDistance = -1;
+        for (int index = 0; index < width * height; index++) {
+            double closest = Double.POSITIVE_INFINITY;
+            for (int l = 0; l < chosen; l++) {
+                closest = Math.min(closest, distances[l][index]);
+            }
+            if (closest > bestDistance && (closest < Double.POSITIVE_INFINITY
+                    || tileCost.cost(minX + index % width, minY + index / width) < Double.MAX_VALUE)) {
+                best = index;
+                bestDistance = closest;
+                if (closest == Double.POSITIVE_INFINITY) break; // Covers a new component
+            }
+        }
+        return best;
+    }
+
+    private void repairLandmark(int l, int fromX, int fromY, int toX, int toY) {
+        float[] distance = distances[l];
+        byte[] parent = parents[l];
+
+        // Every changed tile and its subtree in the shortest path tree loses its distance
+        int[] stack = new int[64];
+        int size = 0;
+        for (int y = fromY; y < toY; y++) {
+            for (int x = fromX; x < toX; x++) {
+                if (size == stack.length) stack = Arrays.copyOf(stack, size * 2);
+                stack[size++] = index(x, y);
+            }
+        }
+        if (invalid == null) invalid = new boolean[width * height];
+        int[] invalidated = new int[64];
+        int invalidCount = 0;
+        while (size > 0) {
+            int index = stack[--size];
+            if (invalid[index]) continue;
+            invalid[index] = true;
+            if (invalidCount == invalidated.length) invalidated = Arrays.copyOf(invalidated, invalidCount * 2);
+            invalidated[invalidCount++] = index;
+
+            int x = minX + index % width;
+            int y = minY + index / width;
+            for (int d = 0; d < DX.length; d++) {
+                int nx = x + DX[d];
+                int ny = y + DY[d];
+                if (!contains(nx, ny)) continue;
+                int child = index(nx, ny);
+                if (!invalid[child] && parent[child] == (d ^ 1)) { // Child points back at this tile
+                    if (size == stack.length) stack = Arrays.copyOf(stack, size * 2);
+                    stack[size++] = child;
+                }
+            }
+        }
+
+        // Seed the invalid area from its valid border, then let Dijkstra settle it and propagate decreases
+        IndexedMinHeap queue = new IndexedMinHeap();
+        for (int i = 0; i < invalidCount; i++) {
+            int index = invalidated[i];
+            distance[index] = Float.POSITIVE_INFINITY;
+            parent[index] = NO_PARENT;
+            invalid[index] = false; // Ready for the next landmark, cheaper than clearing the whole window
+        }
+        for (int i = 0; i < invalidCount; i++) {
+            int index = invalidated[i];
+            if (index == landmarks[l]) {
+                distance[index] = 0;
+                queue.insertOrDecrease(index, 0);
+                continue;
+            }
+            int x = minX + index % width;
+            int y = minY + index / width;
+            double enter = tileCost.cost(x, y);
+            if (enter >= Double.MAX_VALUE) continue;
+            for (int d = 0; d < DX.length; d++) {
+                int nx = x + DX[d];
+                int ny = y + DY[d];
+                if (!contains(nx, ny)) continue;
+                double candidate = distance[index(nx, ny)] + enter;
+                if (candidate < distance[index]) {
+                    distance[index] = (float) candidate;
+                    parent[index] = (byte) d;
+                    queue.insertOrDecrease(index, candidate);
+                }
+            }
+        }
+        dijkstra(l, queue);
+    }
+
+    private void dijkstra(int l, IndexedMinHeap queue) {
+        float[] distance = distances[l];
+        byte[] parent = parents[l];
+        while (!queue.isEmpty()) {
+            int index = queue.poll();
+            int x = minX + index % width;
+            int y = minY + index / width;
+            double g = distance[index];
+
+            for (int d = 0; d < DX.length; d++) {
+                int nx = x + DX[d];
+                int ny = y + DY[d];
+                if (!contains(nx, ny)) continue;
+                double enter = tileCost.cost(nx, ny);
+                if (enter >= Double.MAX_VALUE) continue;
+
+                int neighbor = index(nx, ny);
+                double tentative = g + enter;
+                if (tentative < distance[neighbor]) {
+                    distance[neighbor] = (float) tentative;
+                    parent[neighbor] = (byte) (d ^ 1); // Direction from the neighbour back to this tile
+                    queue.insertOrDecrease(neighbor, tentative);
+                }
+            }
+        }
+    }
+
+    // Two ulps of the largest stored distance cover the rounding of both distances in a bound
+    private void updateSlack() {
+        float max = 0;
+        for (float[] table : distances) {
+            for (float value : table) {
+                if (value != Float.POSITIVE_INFINITY && value > max) max = value;
+            }
+        }
+        slack = 2 * Math.ulp(max);
+    }
+
+    private boolean contains(int x, int y) {
+        return x >= minX && y >= minY && x < minX + width && y < minY + height;
+    }
+
+    private int index(int x, int y) {
+        return (y - minY) * width + (x - minX);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+// Moves a search may take from a tile, as precomputed offset tables. Orthogonal moves come first, and every
+// diagonal names the two orthogonal moves it passes between. A diagonal is only allowed when both of them are
+// passable, so paths never cut a corner past deep water. Diagonal steps cost sqrt(2) times the entered tile.
+public enum Movement {
+    FOUR("4-way", new int[]{-1, 1, 0, 0}, new int[]{0, 0, -1, 1}),
+    EIGHT("8-way", new int[]{-1, 1, 0, 0, -1, -1, 1, 1}, new int[]{0, 0, -1, 1, -1, 1, -1, 1});
+
+    private static final double SQRT2 = Math.sqrt(2);
+
+    final int[] dx;
+    final int[] dy;
+    final double[] stepFactor; // Multiplier of the entered tile's cost per move
+    final int[] cornerMask; // Bits of the orthogonal moves (by index) a diagonal needs, 0 for orthogonal moves
+    private final String displayName;
+
+    Movement(String displayName, int[] dx, int[] dy) {
+        this.displayName = displayName;
+        this.dx = dx;
+        this.dy = dy;
+        this.stepFactor = new double[dx.length];
+        this.cornerMask = new int[dx.length];
+        for (int i = 0; i < dx.length; i++) {
+            boolean diagonal = dx[i] != 0 && dy[i] != 0;
+            stepFactor[i] = diagonal ? Math.sqrt(2) : 1; // Static constants are not available to enum constructors
+            if (diagonal) {
+                cornerMask[i] = (1 << (dx[i] < 0 ? 0 : 1)) | (1 << (dy[i] < 0 ? 2 : 3));
+            }
+        }
+    }
+
+    // Admissible distance for tile costs of at least 1: Manhattan for 4-way, octile for 8-way movement
+    public double distance(int fromX, int fromY, int toX, int toY) {
+        int distanceX = Math.abs(fromX - toX);
+        int distanceY = Math.abs(fromY - toY);
+        if (this == FOUR) return distanceX + distanceY;
+        int diagonal = Math.min(distanceX, distanceY);
+        return Math.max(distanceX, distanceY) - diagonal + SQRT2 * diagonal;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
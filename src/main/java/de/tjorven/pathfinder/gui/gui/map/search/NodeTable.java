@@ -0,0 +1,155 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.util.Arrays;
+
+// Open-addressing table that maps packed tile coordinates to dense node slots.
+// Every per-node value (g-score, parent, closed flag) lives in parallel primitive arrays indexed by slot,
+// so the table is reused between searches without allocating per expanded node.
+public class NodeTable {
+    private static final int EMPTY = -1;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+
+    private int[] buckets; // Slot index per bucket or EMPTY, power-of-two length
+    private long[] keys;
+    private double[] gScore;
+    private int[] parent;
+    private boolean[] closed;
+    private int size;
+
+    public NodeTable() {
+        buckets = new int[INITIAL_CAPACITY * 2];
+        Arrays.fill(buckets, EMPTY);
+        keys = new long[INITIAL_CAPACITY];
+        gScore = new double[INITIAL_CAPACITY];
+        parent = new int[INITIAL_CAPACITY];
+        closed = new boolean[INITIAL_CAPACITY];
+    }
+
+    public static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+    public static int unpackX(long key) {
+        return (int) (key >> 32);
+    }
+
+    public static int unpackY(long key) {
+        return (int) key;
+    }
+
+    // Returns the slot of the given key or -1 if the node was never touched
+    public int find(long key) {
+        int mask = buckets.length - 1;
+        int bucket = hash(key) & mask;
+        while (true) {
+            int slot = buckets[bucket];
+            if (slot == EMPTY) return -1;
+            if (keys[slot] == key) return slot;
+            bucket = (bucket + 1) & mask;
+        }
+    }
+
+    // Adds a key that is known to be absent and returns its new slot
+    public int insert(long key) {
+        if (size == keys.length) {
+            grow();
+        }
+
+        int slot = size++;
+        keys[slot] = key;
+        gScore[slot] = Double.MAX_VALUE;
+        parent[slot] = -1;
+        closed[slot] = false;
+
+        int mask = buckets.length - 1;
+        int bucket = hash(key) & mask;
+        while (buckets[bucket] != EMPTY) {
+            bucket = (bucket + 1) & mask;
+        }
+        buckets[bucket] = slot;
+        return slot;
+    }
+
+    public void clear() {
+        if (size > 0) {
+            Arrays.fill(buckets, EMPTY);
+            size = 0;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long key(int slot) {
+        return keys[slot];
+    }
+
+    public double g(int slot) {
+        return gScore[slot];
+    }
+
+    public void setG(int slot, double g) {
+        gScore[slot] = g;
+    }
+
+    public int parent(int slot) {
+        return parent[slot];
+    }
+
+    public void setParent(int slot, int parentSlot) {
+        parent[slot] = parentSlot;
+    }
+
+    public boolean isClosed(int slot) {
+        return closed[slot];
+    }
+
+    public void setClosed(int slot, boolean value) {
+        closed[slot] = value;
+    }
+
+    // Packed keys of every closed node, e.g. to show the expanded area of a search
+    public long[] closedKeys() {
+        int count = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (closed[slot]) count++;
+        }
+        long[] result = new long[count];
+        int next = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (closed[slot]) result[next++] = keys[slot];
+        }
+        return result;
+    }
+
+    private void grow() {
+        int capacity = keys.length * 2;
+        keys = Arrays.copyOf(keys, capacity);
+        gScore = Arrays.copyOf(gScore, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        closed = Arrays.copyOf(closed, capacity);
+
+        // Keep the load factor at or below 0.5 and re-insert every live slot
+        buckets = new int[capacity * 2];
+        Arrays.fill(buckets, EMPTY);
+        int mask = buckets.length - 1;
+        for (int slot = 0; slot < size; slot++) {
+            int bucket = hash(keys[slot]) & mask;
+            while (buckets[bucket] != EMPTY) {
+                bucket = (bucket + 1) & mask;
+            }
+            buckets[bucket] = slot;
+        }
+    }
+
+    private static int hash(long key) {
+        // Murmur3 finalizer, spreads neighbouring coordinates across the table
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+}
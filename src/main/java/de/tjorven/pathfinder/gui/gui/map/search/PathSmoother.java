@@ -0,0 +1,157 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.util.Arrays;
+
+// Line-of-sight string pulling: from each anchor the path jumps to the farthest following tile that a straight
+// line reaches without crossing impassable tiles and without costing more than the tiles it replaces. Lines are
+// walked with the same moves and costs as the search (a 4-connected staircase, or Bresenham steps with the corner
+// rule for 8-way paths), so every smoothed segment is itself a valid path and the whole never gets more expensive.
+// On the terrain grid this mostly picks the straightest of many equally cheap staircases.
+// An instance reuses its buffers and is not thread-safe.
+public class PathSmoother {
+    private static final int MAX_SEGMENT = 64; // Longest shortcut in steps, bounds the work per tile
+    private static final double SQRT2 = Math.sqrt(2);
+    private static final double EPSILON = 1e-9; // Relative, absorbs rounding when summing the same costs
+
+    private final TileCost tileCost;
+    private int[] xs = new int[1024];
+    private int[] ys = new int[1024];
+    private double[] prefixCost = new double[1024]; // Cost from the start to each tile along the original path
+
+    public PathSmoother(TileCost tileCost) {
+        this.tileCost = tileCost;
+    }
+
+    // Returns the packed keys (see NodeTable.pack) of the smoothed waypoints, start and end included.
+    // Collinear waypoints are merged, so a straight stretch is a single segment.
+    public long[] smooth(CompactPath path) {
+        boolean diagonal = path.hasDiagonalSteps();
+        int length = load(path, diagonal);
+
+        long[] waypoints = new long[16];
+        int count = 0;
+        waypoints[count++] = NodeTable.pack(xs[0], ys[0]);
+        int anchor = 0;
+        while (anchor < length - 1) {
+            int reach = anchor + 1;
+            int limit = Math.min(length - 1, anchor + MAX_SEGMENT);
+            for (int candidate = anchor + 2; candidate <= limit; candidate++) {
+                double budget = prefixCost[candidate] - prefixCost[anchor];
+                if (lineCost(xs[anchor], ys[anchor], xs[candidate], ys[candidate], diagonal, budget) > budget * (1 + EPSILON)) {
+                    break;
+                }
+                reach = candidate;
+            }
+
+            long key = NodeTable.pack(xs[reach], ys[reach]);
+            if (count >= 2 && collinear(waypoints[count - 2], waypoints[count - 1], key)) {
+                waypoints[count - 1] = key;
+            } else {
+                if (count == waypoints.length) waypoints = Arrays.copyOf(waypoints, count * 2);
+                waypoints[count++] = key;
+            }
+            anchor = reach;
+        }
+        return Arrays.copyOf(waypoints, count);
+    }
+
+    // Unpacks the tiles into the buffers and sums their step costs, returns the number of tiles
+    private int load(CompactPath path, boolean diagonal) {
+        int length = path.length();
+        if (xs.length < length) {
+            int capacity = Math.max(length, xs.length * 2);
+            xs = new int[capacity];
+            ys = new int[capacity];
+            prefixCost = new double[capacity];
+        }
+
+        int i = 0;
+        for (Point tile : path) {
+            xs[i] = tile.x;
+            ys[i] = tile.y;
+            if (i == 0) {
+                prefixCost[0] = 0;
+            } else {
+                boolean diagonalStep = diagonal && xs[i] != xs[i - 1] && ys[i] != ys[i - 1];
+                double cost = tileCost.cost(tile.x, tile.y);
+                prefixCost[i] = prefixCost[i - 1] + (diagonalStep ? SQRT2 * cost : cost);
+            }
+            i++;
+        }
+        return length;
+    }
+
+    // Cost of walking the straight line between two tiles, infinite if it is blocked or exceeds the budget
+    private double lineCost(int fromX, int fromY, int toX, int toY, boolean diagonal, double budget) {
+        int distanceX = Math.abs(toX - fromX);
+        int distanceY = Math.abs(toY - fromY);
+        int stepX = Integer.signum(toX - fromX);
+        int stepY = Integer.signum(toY - fromY);
+        double limit = budget * (1 + EPSILON);
+        int x = fromX;
+        int y = fromY;
+        double total = 0;
+
+        if (!diagonal) {
+            // 4-connected: step along whichever axis the line crosses first, y on ties
+            for (int movedX = 0, movedY = 0; movedX < distanceX || movedY < distanceY; ) {
+                if ((long) (1 + 2 * movedX) * distanceY < (long) (1 + 2 * movedY) * distanceX) {
+                    x += stepX;
+                    movedX++;
+                } else {
+                    y += stepY;
+                    movedY++;
+                }
+                double cost = tileCost.cost(x, y);
+                if (cost >= Double.MAX_VALUE) return Double.POSITIVE_INFINITY;
+                total += cost;
+                if (total > limit) return Double.POSITIVE_INFINITY;
+            }
+            return total;
+        }
+
+        // 8-connected Bresenham: one step along the major axis per tile, diagonal whenever the error allows
+        boolean majorX = distanceX >= distanceY;
+        int major = majorX ? distanceX : distanceY;
+        int minor = majorX ? distanceY : distanceX;
+        int error = 2 * minor - major;
+        for (int i = 0; i < major; i++) {
+            double cost;
+            if (error > 0) {
+                // Corner rule: both orthogonal neighbours of a diagonal step must be passable
+                if (tileCost.cost(x + stepX, y) >= Double.MAX_VALUE || tileCost.cost(x, y + stepY) >= Double.MAX_VALUE) {
+                    return Double.POSITIVE_INFINITY;
+                }
+                x += stepX;
+                y += stepY;
+                error -= 2 * major;
+                cost = tileCost.cost(x, y);
+                if (cost >= Double.MAX_VALUE) return Double.POSITIVE_INFINITY;
+                cost *= SQRT2;
+            } else {
+                if (majorX) {
+                    x += stepX;
+                } else {
+                    y += stepY;
+                }
+                cost = tileCost.cost(x, y);
+                if (cost >= Double.MAX_VALUE) return Double.POSITIVE_INFINITY;
+            }
+            error += 2 * minor;
+            total += cost;
+            if (total > limit) return Double.POSITIVE_INFINITY;
+        }
+        return total;
+    }
+
+    private static boolean collinear(long a, long b, long c) {
+        long abX = NodeTable.unpackX(b) - NodeTable.unpackX(a);
+        long abY = NodeTable.unpackY(b) - NodeTable.unpackY(a);
+        long bcX = NodeTable.unpackX(c) - NodeTable.unpackX(b);
+        long bcY = NodeTable.unpackY(c) - NodeTable.unpackY(b);
+        // Same direction, not just the same line. The walk of a line repeats with its reduced direction, so the
+        // merged segment visits exactly the tiles of both parts and costs the same.
+        return abX * bcY == abY * bcX && abX * bcX + abY * bcY > 0;
+    }
+}
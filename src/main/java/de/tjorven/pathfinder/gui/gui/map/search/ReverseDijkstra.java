@@ -0,0 +1,99 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+// One-to-many search for many agents heading to a common goal. A single Dijkstra runs backwards from the goal
+// until every start is settled, then each agent follows the next-hop pointers to the goal.
+// An instance reuses its buffers and is not thread-safe.
+public class ReverseDijkstra {
+    private static final int[] DX = {-1, 1, 0, 0};
+    private static final int[] DY = {0, 0, -1, 1};
+
+    private final NodeTable nodes = new NodeTable();
+    private final NodeTable targets = new NodeTable(); // Distinct in-bounds start tiles of the current query
+    private final IndexedMinHeap openSet = new IndexedMinHeap();
+    private final CostFunction costFunction;
+    private final int minX;
+    private final int minY;
+    private final int maxX; // Exclusive
+    private final int maxY; // Exclusive
+
+    public ReverseDijkstra(CostFunction costFunction, int minX, int minY, int maxX, int maxY) {
+        this.costFunction = costFunction;
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+    }
+
+    // Returns one path per start in the same order, null for starts that cannot reach the goal
+    public List<List<Point>> search(int goalX, int goalY, List<Point> starts) {
+        nodes.clear();
+        openSet.clear();
+
+        targets.clear();
+        for (Point start : starts) {
+            long key = NodeTable.pack(start.x, start.y);
+            if (start.x >= minX && start.y >= minY && start.x < maxX && start.y < maxY && targets.find(key) < 0) {
+                targets.insert(key);
+            }
+        }
+        int remaining = targets.size();
+
+        int goal = nodes.insert(NodeTable.pack(goalX, goalY));
+        nodes.setG(goal, 0);
+        openSet.insertOrDecrease(goal, 0);
+
+        while (!openSet.isEmpty() && remaining > 0) {
+            int current = openSet.poll();
+            nodes.setClosed(current, true);
+            long currentKey = nodes.key(current);
+            int x = NodeTable.unpackX(currentKey);
+            int y = NodeTable.unpackY(currentKey);
+            double g = nodes.g(current);
+
+            if (targets.find(currentKey) >= 0) remaining--;
+
+            for (int i = 0; i < DX.length; i++) {
+                int px = x + DX[i];
+                int py = y + DY[i];
+                if (px < minX || py < minY || px >= maxX || py >= maxY) continue;
+
+                long predecessorKey = NodeTable.pack(px, py);
+                int predecessor = nodes.find(predecessorKey);
+                if (predecessor >= 0 && nodes.isClosed(predecessor)) continue;
+
+                double stepCost = costFunction.cost(px, py, x, y); // Forward step from the predecessor
+                if (stepCost >= Double.MAX_VALUE) continue;
+
+                double tentative = g + stepCost;
+                if (predecessor < 0) {
+                    predecessor = nodes.insert(predecessorKey);
+                } else if (tentative >= nodes.g(predecessor)) {
+                    continue;
+                }
+                nodes.setG(predecessor, tentative);
+                nodes.setParent(predecessor, current); // Next hop towards the goal
+                openSet.insertOrDecrease(predecessor, tentative);
+            }
+        }
+
+        List<List<Point>> paths = new ArrayList<>(starts.size());
+        for (Point start : starts) {
+            int slot = nodes.find(NodeTable.pack(start.x, start.y));
+            paths.add(slot >= 0 && nodes.isClosed(slot) ? followNextHops(slot) : null);
+        }
+        return paths;
+    }
+
+    private List<Point> followNextHops(int slot) {
+        List<Point> path = new ArrayList<>();
+        for (; slot >= 0; slot = nodes.parent(slot)) {
+            long key = nodes.key(slot);
+            path.add(new Point(NodeTable.unpackX(key), NodeTable.unpackY(key)));
+        }
+        return path;
+    }
+}
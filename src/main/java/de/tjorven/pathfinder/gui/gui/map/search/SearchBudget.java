@@ -0,0 +1,39 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+// Upper limit on the work of one search, either wall-clock time, node expansions or both.
+// Searches check the clock only every few expansions, so a time budget may be overrun by a few microseconds.
+public final class SearchBudget {
+    public static final SearchBudget UNLIMITED = new SearchBudget(Long.MAX_VALUE, Long.MAX_VALUE);
+    private static final int CLOCK_INTERVAL = 64; // Expansions between two clock reads, power of two
+
+    private final long maxNanos;
+    private final long maxExpansions;
+
+    public SearchBudget(long maxNanos, long maxExpansions) {
+        this.maxNanos = maxNanos;
+        this.maxExpansions = maxExpansions;
+    }
+
+    public static SearchBudget ofMillis(long millis) {
+        return new SearchBudget(millis * 1_000_000, Long.MAX_VALUE);
+    }
+
+    public static SearchBudget ofExpansions(long expansions) {
+        return new SearchBudget(Long.MAX_VALUE, expansions);
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMaxExpansions() {
+        return maxExpansions;
+    }
+
+    // True once a search that started at startNanos and expanded this many nodes has to stop
+    public boolean isExhausted(long expandedNodes, long startNanos) {
+        if (expandedNodes >= maxExpansions) return true;
+        return maxNanos != Long.MAX_VALUE && (expandedNodes & (CLOCK_INTERVAL - 1)) == 0
+                && System.nanoTime() - startNanos >= maxNanos;
+    }
+}
@@ -0,0 +1,22 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+public enum SearchMode {
+    ASTAR("A*"),
+    BIDIRECTIONAL("Bidirectional A*"),
+    WEIGHTED("Weighted A*"),
+    ANYTIME("Anytime (ARA*)"),
+    HIERARCHICAL("Hierarchical (HPA*)"),
+    JUMP_POINT("Jump point"),
+    INCREMENTAL("Incremental (D* Lite)");
+
+    private final String displayName;
+
+    SearchMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
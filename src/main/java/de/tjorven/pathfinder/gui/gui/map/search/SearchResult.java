@@ -0,0 +1,43 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+import java.awt.*;
+import java.util.List;
+
+// Outcome of one search. The bound is the factor by which the path may cost more than the optimum:
+// 1 for optimal searches, infinite when the search gives no guarantee (e.g. hierarchical paths).
+// A search that ran out of budget is incomplete, a null path then does not prove that the goal is unreachable.
+public final class SearchResult {
+    private final List<Point> path;
+    private final double suboptimalityBound;
+    private final long expandedNodes;
+    private final boolean complete;
+
+    public SearchResult(List<Point> path, double suboptimalityBound, long expandedNodes, boolean complete) {
+        this.path = path;
+        this.suboptimalityBound = suboptimalityBound;
+        this.expandedNodes = expandedNodes;
+        this.complete = complete;
+    }
+
+    public List<Point> getPath() {
+        return path;
+    }
+
+    public double getSuboptimalityBound() {
+        return suboptimalityBound;
+    }
+
+    public long getExpandedNodes() {
+        return expandedNodes;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SearchResult[found=%b, bound=%.3f, expanded=%d, complete=%b]",
+                path != null, suboptimalityBound, expandedNodes, complete);
+    }
+}
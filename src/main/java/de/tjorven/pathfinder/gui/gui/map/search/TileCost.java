@@ -0,0 +1,7 @@
+package de.tjorven.pathfinder.gui.gui.map.search;
+
+// Cost of entering a tile regardless of the direction, Double.MAX_VALUE marks the tile as impassable
+@FunctionalInterface
+public interface TileCost {
+    double cost(int x, int y);
+}
@@ -0,0 +1,145 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Loads sections on a bounded pool of daemon workers. Requests for a section that is already queued or
+// loading share one future. Visible sections are taken from the queue before prefetched ones, and within a
+// priority the earliest deadline (when the section is expected to come into view) goes first.
+public class AsyncSectionLoader {
+
+    public enum Priority {
+        VISIBLE,
+        PREFETCH
+    }
+
+    private final Function<Point, HeightField> loader;
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<Point, LoadTask> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile Consumer<Point> listener = key -> {
+    };
+
+    public AsyncSectionLoader(Function<Point, HeightField> loader, int threads) {
+        this.loader = loader;
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "section-loader-" + threadId.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Called on a worker thread with the key of every section that finished loading
+    public void setListener(Consumer<Point> listener) {
+        this.listener = listener;
+    }
+
+    public CompletableFuture<HeightField> request(Point sectionKey, Priority priority) {
+        return request(sectionKey, priority, System.nanoTime());
+    }
+
+    // Deadline in System.nanoTime() terms, orders requests of the same priority
+    public CompletableFuture<HeightField> request(Point sectionKey, Priority priority, long deadlineNanos) {
+        while (true) {
+            LoadTask task = inFlight.get(sectionKey);
+            if (task == null) {
+                LoadTask created = new LoadTask(new Point(sectionKey), priority, deadlineNanos);
+                task = inFlight.putIfAbsent(created.key, created);
+                if (task == null) {
+                    executor.execute(created);
+                    return created.future;
+                }
+            }
+
+            // Requeue a waiting task that became more urgent, e.g. a prefetch that is now visible
+            if (task.isLessUrgentThan(priority, deadlineNanos) && executor.getQueue().remove(task)) {
+                if (priority.ordinal() < task.priority.ordinal()) task.priority = priority;
+                task.deadline = Math.min(task.deadline, deadlineNanos);
+                executor.execute(task);
+            }
+            if (!task.future.isCancelled()) {
+                return task.future;
+            }
+            inFlight.remove(sectionKey, task); // Cancelled, retry with a fresh task
+        }
+    }
+
+    // Drops queued requests, loads that already started still complete
+    public void cancelPending() {
+        List<Runnable> pending = new ArrayList<>();
+        executor.getQueue().drainTo(pending);
+        for (Runnable runnable : pending) {
+            LoadTask task = (LoadTask) runnable;
+            inFlight.remove(task.key, task);
+            task.future.cancel(false);
+        }
+    }
+
+    // Drops queued prefetches the caller no longer wants, e.g. after the view turned around
+    public void cancelPrefetches(Predicate<Point> unwanted) {
+        for (Runnable runnable : executor.getQueue().toArray(new Runnable[0])) {
+            LoadTask task = (LoadTask) runnable;
+            if (task.priority == Priority.PREFETCH && unwanted.test(task.key) && executor.getQueue().remove(task)) {
+                inFlight.remove(task.key, task);
+                task.future.cancel(false);
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return inFlight.size();
+    }
+
+    public void shutdown() {
+        cancelPending();
+        executor.shutdown();
+    }
+
+    private final class LoadTask implements Runnable, Comparable<LoadTask> {
+        private final Point key;
+        private final long order = sequence.getAndIncrement();
+        private final CompletableFuture<HeightField> future = new CompletableFuture<>();
+        private volatile Priority priority;
+        private volatile long deadline;
+
+        private LoadTask(Point key, Priority priority, long deadline) {
+            this.key = key;
+            this.priority = priority;
+            this.deadline = deadline;
+        }
+
+        private boolean isLessUrgentThan(Priority otherPriority, long otherDeadline) {
+            if (otherPriority.ordinal() != priority.ordinal()) return otherPriority.ordinal() < priority.ordinal();
+            return otherDeadline - deadline < 0;
+        }
+
+        @Override
+        public void run() {
+            try {
+                future.complete(loader.apply(key));
+                listener.accept(key);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                inFlight.remove(key, this);
+            }
+        }
+
+        @Override
+        public int compareTo(LoadTask other) {
+            int byPriority = Integer.compare(priority.ordinal(), other.priority.ordinal());
+            if (byPriority != 0) return byPriority;
+            int byDeadline = Long.signum(deadline - other.deadline); // Overflow-safe like System.nanoTime() itself
+            return byDeadline != 0 ? byDeadline : Long.compare(order, other.order);
+        }
+    }
+}
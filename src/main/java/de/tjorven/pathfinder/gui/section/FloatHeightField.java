@@ -0,0 +1,64 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.nio.ByteBuffer;
+
+// 4 bytes per tile, heights in the generated range of about -100 to 100 keep 5 decimal places
+public class FloatHeightField implements HeightField {
+    private final int size;
+    private final float[] heights; // Row-major
+
+    public FloatHeightField(int size, float[] heights) {
+        this.size = size;
+        this.heights = heights;
+    }
+
+    // Converts [x][y] heights as produced by PerlinMap
+    public static FloatHeightField of(double[][] section) {
+        int size = section.length;
+        float[] heights = new float[size * size];
+        for (int x = 0; x < size; x++) {
+            double[] column = section[x];
+            for (int y = 0; y < size; y++) {
+                heights[y * size + x] = (float) column[y];
+            }
+        }
+        return new FloatHeightField(size, heights);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public double get(int x, int y) {
+        return heights[y * size + x];
+    }
+
+    @Override
+    public long getBytes() {
+        return 16 + 16 + (long) heights.length * Float.BYTES; // Object and array headers
+    }
+
+    @Override
+    public int getEncodedBytes() {
+        return encodedBytes(size);
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer) {
+        buffer.asFloatBuffer().put(heights);
+        buffer.position(buffer.position() + heights.length * Float.BYTES);
+    }
+
+    static int encodedBytes(int size) {
+        return size * size * Float.BYTES;
+    }
+
+    static FloatHeightField decode(ByteBuffer buffer, int size) {
+        float[] heights = new float[size * size];
+        buffer.asFloatBuffer().get(heights);
+        buffer.position(buffer.position() + heights.length * Float.BYTES);
+        return new FloatHeightField(size, heights);
+    }
+}
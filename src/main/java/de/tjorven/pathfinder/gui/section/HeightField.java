@@ -0,0 +1,39 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.nio.ByteBuffer;
+
+// Heights of one square section, read by the pathfinder, the renderer and the storage backends.
+// Implementations store the tiles row-major in a flat array and are immutable once built.
+public interface HeightField {
+
+    // Tiles per side
+    int getSize();
+
+    double get(int x, int y);
+
+    // Approximate heap footprint including headers, used to weigh cache entries
+    long getBytes();
+
+    // Length of the encoded form written by encode
+    int getEncodedBytes();
+
+    // Writes the section little-endian at the buffer position
+    void encode(ByteBuffer buffer);
+
+    // Reads a section written by encode, the format is told apart by the encoded length
+    static HeightField decode(ByteBuffer buffer, int size, int encodedBytes) {
+        if (encodedBytes == FloatHeightField.encodedBytes(size)) return FloatHeightField.decode(buffer, size);
+        if (encodedBytes == QuantizedHeightField.encodedBytes(size)) return QuantizedHeightField.decode(buffer, size);
+        if (encodedBytes == size * size * Double.BYTES) {
+            // Raw doubles in x-major order, written before sections had a compact form
+            float[] heights = new float[size * size];
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    heights[y * size + x] = (float) buffer.getDouble();
+                }
+            }
+            return new FloatHeightField(size, heights);
+        }
+        throw new IllegalArgumentException("Unknown section encoding of " + encodedBytes + " bytes");
+    }
+}
@@ -0,0 +1,14 @@
+package de.tjorven.pathfinder.gui.section;
+
+// In-memory and on-disk representation of generated sections
+public enum HeightFormat {
+    FLOAT,
+    QUANTIZED;
+
+    public HeightField encode(double[][] section) {
+        return switch (this) {
+            case FLOAT -> FloatHeightField.of(section);
+            case QUANTIZED -> QuantizedHeightField.of(section);
+        };
+    }
+}
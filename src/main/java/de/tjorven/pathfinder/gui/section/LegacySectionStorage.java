@@ -0,0 +1,64 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.awt.*;
+import java.io.*;
+
+// Original layout: one Java-serialized double[][] per section named x_y.dat, read back as floats
+public class LegacySectionStorage implements SectionStorage {
+    private static final String EXTENSION = ".dat";
+    private final File mapDirectory;
+
+    public LegacySectionStorage(File mapDirectory) {
+        this.mapDirectory = mapDirectory;
+        if (!mapDirectory.exists()) {
+            mapDirectory.mkdirs();
+        }
+    }
+
+    @Override
+    public HeightField load(Point sectionKey) {
+        File sectionFile = sectionFile(sectionKey);
+        if (sectionFile.exists()) {
+            try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(sectionFile)))) {
+                return FloatHeightField.of((double[][]) ois.readObject());
+            } catch (IOException | ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+        }
+        return null; // Return null if the section does not exist
+    }
+
+    @Override
+    public void save(Point sectionKey, HeightField sectionData) {
+        int size = sectionData.getSize();
+        double[][] heights = new double[size][size];
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                heights[x][y] = sectionData.get(x, y);
+            }
+        }
+        try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(sectionFile(sectionKey))))) {
+            oos.writeObject(heights);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void remove(Point sectionKey) {
+        sectionFile(sectionKey).delete();
+    }
+
+    @Override
+    public void deleteAll() {
+        File[] files = mapDirectory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null) return;
+        for (File file : files) {
+            file.delete();
+        }
+    }
+
+    private File sectionFile(Point sectionKey) {
+        return new File(mapDirectory, sectionKey.x + "_" + sectionKey.y + EXTENSION);
+    }
+}
@@ -0,0 +1,84 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.nio.ByteBuffer;
+
+// 2 bytes per tile: 16-bit fixed point between the section's lowest and highest height.
+// Rounding is off by at most half a step, range / 65535 / 2: about 0.00153 for a section spanning 200 height
+// units, well below what tile costs distinguish.
+public class QuantizedHeightField implements HeightField {
+    private static final int LEVELS = 0xFFFF;
+    private final int size;
+    private final short[] heights; // Row-major, unsigned steps above offset
+    private final double offset;
+    private final double scale;
+
+    public QuantizedHeightField(int size, short[] heights, double offset, double scale) {
+        this.size = size;
+        this.heights = heights;
+        this.offset = offset;
+        this.scale = scale;
+    }
+
+    // Converts [x][y] heights as produced by PerlinMap
+    public static QuantizedHeightField of(double[][] section) {
+        int size = section.length;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double[] column : section) {
+            for (double height : column) {
+                min = Math.min(min, height);
+                max = Math.max(max, height);
+            }
+        }
+
+        double scale = max > min ? (max - min) / LEVELS : 1;
+        short[] heights = new short[size * size];
+        for (int x = 0; x < size; x++) {
+            double[] column = section[x];
+            for (int y = 0; y < size; y++) {
+                heights[y * size + x] = (short) Math.round((column[y] - min) / scale);
+            }
+        }
+        return new QuantizedHeightField(size, heights, min, scale);
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public double get(int x, int y) {
+        return offset + (heights[y * size + x] & LEVELS) * scale;
+    }
+
+    @Override
+    public long getBytes() {
+        return 32 + 16 + (long) heights.length * Short.BYTES; // Object with offset and scale, array header
+    }
+
+    @Override
+    public int getEncodedBytes() {
+        return encodedBytes(size);
+    }
+
+    @Override
+    public void encode(ByteBuffer buffer) {
+        buffer.putDouble(offset).putDouble(scale);
+        buffer.asShortBuffer().put(heights);
+        buffer.position(buffer.position() + heights.length * Short.BYTES);
+    }
+
+    static int encodedBytes(int size) {
+        return 2 * Double.BYTES + size * size * Short.BYTES;
+    }
+
+    static QuantizedHeightField decode(ByteBuffer buffer, int size) {
+        double offset = buffer.getDouble();
+        double scale = buffer.getDouble();
+        short[] heights = new short[size * size];
+        buffer.asShortBuffer().get(heights);
+        buffer.position(buffer.position() + heights.length * Short.BYTES);
+        return new QuantizedHeightField(size, heights, offset, scale);
+    }
+}
@@ -0,0 +1,179 @@
+package de.tjorven.pathfinder.gui.section;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Packs REGION_SIZE x REGION_SIZE sections into one memory-mapped region file, similar to Anvil region files.
+// Layout: magic, version, an index of one int per section (stored bytes, 0 = absent), then fixed-size
+// section slots holding the little-endian HeightField encoding. Slots are sized for the raw x-major doubles
+// written by earlier versions, which are still read; compact encodings leave the rest of the slot sparse.
+public class RegionSectionStorage implements SectionStorage {
+    public static final int REGION_SIZE = 32; // Sections per region along each axis
+    private static final int MAGIC = 0x50465247; // "PFRG"
+    private static final int VERSION = 1;
+    private static final String EXTENSION = ".region";
+    private static final int SECTION_BYTES = SectionManager.SECTION_SIZE * SectionManager.SECTION_SIZE * Double.BYTES;
+    private static final int INDEX_OFFSET = 2 * Integer.BYTES;
+    private static final int DATA_OFFSET = INDEX_OFFSET + REGION_SIZE * REGION_SIZE * Integer.BYTES;
+    private static final long REGION_BYTES = DATA_OFFSET + (long) REGION_SIZE * REGION_SIZE * SECTION_BYTES;
+
+    private final File mapDirectory;
+    private final SectionStorage fallback; // Older layout that is migrated on first access, may be null
+    private final boolean ownsDirectory; // A pyramid level's subdirectory, created on the first save, removed by deleteAll
+    private final Map<Point, MappedByteBuffer> regions = new HashMap<>();
+
+    public RegionSectionStorage(File mapDirectory, SectionStorage fallback) {
+        this(mapDirectory, fallback, false);
+        if (!mapDirectory.exists()) {
+            mapDirectory.mkdirs();
+        }
+    }
+
+    private RegionSectionStorage(File mapDirectory, SectionStorage fallback, boolean ownsDirectory) {
+        this.mapDirectory = mapDirectory;
+        this.fallback = fallback;
+        this.ownsDirectory = ownsDirectory;
+    }
+
+    @Override
+    public HeightField load(Point sectionKey) {
+        MappedByteBuffer region = region(sectionKey, false);
+        int index = indexInRegion(sectionKey);
+        int storedBytes = region == null ? 0 : region.getInt(INDEX_OFFSET + index * Integer.BYTES);
+        if (storedBytes == 0) {
+            return migrate(sectionKey);
+        }
+
+        try {
+            return HeightField.decode(sectionSlot(region, index), SectionManager.SECTION_SIZE, storedBytes);
+        } catch (IllegalArgumentException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    @Override
+    public void save(Point sectionKey, HeightField sectionData) {
+        MappedByteBuffer region = region(sectionKey, true);
+        if (region == null) return;
+
+        int index = indexInRegion(sectionKey);
+        sectionData.encode(sectionSlot(region, index));
+        // Publish the index entry last so a torn write reads as a missing section
+        region.putInt(INDEX_OFFSET + index * Integer.BYTES, sectionData.getEncodedBytes());
+    }
+
+    @Override
+    public void remove(Point sectionKey) {
+        MappedByteBuffer region = region(sectionKey, false);
+        if (region != null) {
+            region.putInt(INDEX_OFFSET + indexInRegion(sectionKey) * Integer.BYTES, 0);
+        }
+        if (fallback != null) {
+            fallback.remove(sectionKey);
+        }
+    }
+
+    @Override
+    public synchronized void deleteAll() {
+        // A mapping is only released once its buffer is garbage collected. Until then Windows refuses to delete
+        // the file, so empty the index first: a region file that cannot be deleted then reads as holding nothing.
+        for (MappedByteBuffer region : regions.values()) {
+            for (int index = 0; index < REGION_SIZE * REGION_SIZE; index++) {
+                region.putInt(INDEX_OFFSET + index * Integer.BYTES, 0);
+            }
+            region.force();
+        }
+        regions.clear();
+        File[] files = mapDirectory.listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files != null) {
+            for (File file : files) {
+                file.delete(); // Fails for still mapped files on Windows, they are empty by now
+            }
+        }
+        if (fallback != null) {
+            fallback.deleteAll();
+        }
+        if (ownsDirectory) {
+            mapDirectory.delete(); // Only succeeds when empty, files not written by this storage are kept
+        }
+    }
+
+    @Override
+    public synchronized void flush() {
+        for (MappedByteBuffer region : regions.values()) {
+            region.force();
+        }
+    }
+
+    // Pyramid tiles go into region files of the same layout in a subdirectory per level
+    @Override
+    public SectionStorage levelStorage(int level) {
+        return new RegionSectionStorage(new File(mapDirectory, "lod" + level), null, true);
+    }
+
+    // Copies a section from the fallback storage into its region
+    private HeightField migrate(Point sectionKey) {
+        if (fallback == null) return null;
+        HeightField sectionData = fallback.load(sectionKey);
+        if (sectionData != null) {
+            save(sectionKey, sectionData);
+            fallback.remove(sectionKey);
+        }
+        return sectionData;
+    }
+
+    private synchronized MappedByteBuffer region(Point sectionKey, boolean create) {
+        Point regionKey = new Point(
+                Math.floorDiv(sectionKey.x, REGION_SIZE),
+                Math.floorDiv(sectionKey.y, REGION_SIZE)
+        );
+        MappedByteBuffer region = regions.get(regionKey);
+        if (region != null) return region;
+
+        File regionFile = new File(mapDirectory, "r." + regionKey.x + "." + regionKey.y + EXTENSION);
+        if (!create && !regionFile.exists()) return null;
+        if (create && !mapDirectory.exists()) {
+            mapDirectory.mkdirs();
+        }
+
+        try (FileChannel channel = FileChannel.open(regionFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean fresh = channel.size() == 0;
+            // Mapping the full region extends the file, unwritten slots stay sparse on most file systems
+            region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_BYTES);
+            region.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (fresh) {
+                region.putInt(0, MAGIC);
+                region.putInt(Integer.BYTES, VERSION);
+            } else if (region.getInt(0) != MAGIC || region.getInt(Integer.BYTES) != VERSION) {
+                throw new IOException("Unsupported region file " + regionFile);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+
+        regions.put(regionKey, region);
+        return region;
+    }
+
+    private static ByteBuffer sectionSlot(MappedByteBuffer region, int index) {
+        return region.slice(DATA_OFFSET + index * SECTION_BYTES, SECTION_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static int indexInRegion(Point sectionKey) {
+        return Math.floorMod(sectionKey.y, REGION_SIZE) * REGION_SIZE + Math.floorMod(sectionKey.x, REGION_SIZE);
+    }
+}
@@ -0,0 +1,196 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.awt.*;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Thread-safe LRU cache of section data bounded by an estimated heap budget.
+// Sections inside the pinned area (the visible viewport) are never evicted.
+// Concurrent misses of the same key share one load, so a section is generated and saved only once. A load that
+// was running when its key was invalidated still returns its section but does not cache it.
+public class SectionCache {
+    private final long maxBytes;
+    private final LinkedHashMap<Point, HeightField> entries = new LinkedHashMap<>(256, 0.75f, true); // Access order
+    private long weightBytes;
+    private Rectangle pinned = new Rectangle(); // Section coordinates
+    private final ConcurrentHashMap<Point, CompletableFuture<HeightField>> loading = new ConcurrentHashMap<>();
+    private long epoch; // Bumped by every invalidation, loads that started before it are not cached
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadTimeNanos = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public SectionCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    // Returns the cached section or loads it outside the lock, so slow loads do not block other readers
+    public HeightField get(Point sectionKey, Function<Point, HeightField> loader) {
+        return load(sectionKey, loader, true);
+    }
+
+    // Like get but leaves a loaded section out of the cache, e.g. for bulk reads. Still shares a load in flight.
+    public HeightField read(Point sectionKey, Function<Point, HeightField> loader) {
+        return load(sectionKey, loader, false);
+    }
+
+    private HeightField load(Point sectionKey, Function<Point, HeightField> loader, boolean cache) {
+        long startEpoch = getEpoch();
+        HeightField section = getIfPresent(sectionKey);
+        if (section != null) {
+            hits.increment();
+            return section;
+        }
+
+        CompletableFuture<HeightField> created = new CompletableFuture<>();
+        CompletableFuture<HeightField> pending = loading.putIfAbsent(new Point(sectionKey), created);
+        if (pending != null) {
+            hits.increment(); // Another thread is loading it, wait for that instead of loading it again
+            try {
+                section = pending.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                if (e.getCause() instanceof Error) throw (Error) e.getCause();
+                throw e;
+            }
+            // The shared load may have been an uncached read
+            return section != null && cache ? insert(sectionKey, section, startEpoch) : section;
+        }
+
+        try {
+            // The load that just finished may have cached it between the first lookup and claiming the key
+            section = getIfPresent(sectionKey);
+            if (section != null) {
+                hits.increment();
+                created.complete(section);
+                return section;
+            }
+
+            misses.increment();
+            long start = System.nanoTime();
+            section = loader.apply(sectionKey);
+            loadTimeNanos.add(System.nanoTime() - start);
+            loads.increment();
+            if (section != null && cache) {
+                section = insert(sectionKey, section, startEpoch);
+            }
+            created.complete(section);
+            return section;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            // Only after the section is cached, so a later miss cannot start a second load
+            loading.remove(sectionKey, created);
+        }
+    }
+
+    // Caches a loaded section unless it is cached already, returns the cached one. A section loaded before an
+    // invalidation may predate a replaceSection or a regeneration and is handed out without being cached.
+    private synchronized HeightField insert(Point sectionKey, HeightField section, long loadEpoch) {
+        if (loadEpoch != epoch) return section;
+        HeightField existing = entries.putIfAbsent(new Point(sectionKey), section);
+        if (existing != null) return existing;
+        weightBytes += weigh(section);
+        evict();
+        return section;
+    }
+
+    public synchronized HeightField getIfPresent(Point sectionKey) {
+        return entries.get(sectionKey);
+    }
+
+    private synchronized long getEpoch() {
+        return epoch;
+    }
+
+    public synchronized void invalidate(Point sectionKey) {
+        epoch++;
+        loading.remove(sectionKey); // Later misses load the new data instead of waiting for the old load
+        HeightField removed = entries.remove(sectionKey);
+        if (removed != null) {
+            weightBytes -= weigh(removed);
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        epoch++;
+        loading.clear();
+        entries.clear();
+        weightBytes = 0;
+    }
+
+    // Protects the given section area from eviction, replacing the previous pinned area
+    public synchronized void pin(Rectangle sectionArea) {
+        pinned = new Rectangle(sectionArea);
+        evict();
+    }
+
+    public synchronized Set<Point> keys() {
+        return new HashSet<>(entries.keySet());
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getWeightBytes() {
+        return weightBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    public long getTotalLoadTimeNanos() {
+        return loadTimeNanos.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public static long weigh(HeightField section) {
+        return section.getBytes();
+    }
+
+    // Drops least recently used, unpinned sections until the cache fits its budget
+    private void evict() {
+        Iterator<Map.Entry<Point, HeightField>> iterator = entries.entrySet().iterator();
+        while (weightBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Point, HeightField> entry = iterator.next();
+            if (pinned.contains(entry.getKey())) continue;
+            iterator.remove();
+            weightBytes -= weigh(entry.getValue());
+            evictions.increment();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SectionCache[size=%d, weight=%d/%d bytes, hits=%d, misses=%d, loads=%d, evictions=%d]",
+                size(), getWeightBytes(), maxBytes, getHitCount(), getMissCount(), getLoadCount(), getEvictionCount());
+    }
+}
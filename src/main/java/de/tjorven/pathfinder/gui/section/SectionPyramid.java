@@ -0,0 +1,166 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.awt.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+// Mipmapped sections for zoomed-out views. A tile of level L covers 2^L x 2^L sections with the same number of
+// samples as one section, each the average of a 2^L x 2^L block of tiles. Level 0 are the sections themselves.
+// A tile is box-filtered from its four children of the level below and stored alongside the sections, so a
+// zoomed-out view reads one tile per screen area no matter how much world it shows. Only the first build of a
+// tile touches the sections below it. Replacing a section drops the tiles above it, they are rebuilt on demand.
+// All methods are thread-safe.
+public class SectionPyramid {
+    public static final int MAX_LEVEL = 4; // Tiles of 16 x 16 sections
+    private static final long CACHE_BYTES_PER_LEVEL = 8L * 1024 * 1024; // About 1600 quantized tiles
+
+    private final int size; // Samples per tile side, the section size
+    private final Function<Point, HeightField> sectionReader; // Level 0, should not fill the section cache
+    private final SectionStorage[] storages = new SectionStorage[MAX_LEVEL + 1]; // Index 0 unused
+    private final SectionCache[] caches = new SectionCache[MAX_LEVEL + 1];
+    private final AsyncSectionLoader[] loaders = new AsyncSectionLoader[MAX_LEVEL + 1];
+    private long generation; // Bumped when stored tiles are dropped, tiles built before that are not saved
+    private volatile BiConsumer<Integer, Point> listener = (level, key) -> {
+    };
+
+    public SectionPyramid(int size, SectionStorage sectionStorage, Function<Point, HeightField> sectionReader) {
+        if (size % 2 != 0) throw new IllegalArgumentException("Tile size must be even, was " + size);
+        this.size = size;
+        this.sectionReader = sectionReader;
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            int tileLevel = level;
+            storages[level] = sectionStorage.levelStorage(level);
+            caches[level] = new SectionCache(CACHE_BYTES_PER_LEVEL);
+            // One worker per level, building a coarse tile for the first time is bound by the sections below it
+            loaders[level] = new AsyncSectionLoader(key -> getTile(tileLevel, key), 1);
+            loaders[level].setListener(key -> listener.accept(tileLevel, key));
+        }
+    }
+
+    // Returns the tile, loading or building it on the calling thread
+    public HeightField getTile(int level, Point tileKey) {
+        if (level == 0) return sectionReader.apply(tileKey);
+        checkLevel(level);
+        return caches[level].get(tileKey, key -> {
+            long buildGeneration = getGeneration();
+            HeightField tile = storages[level].load(key);
+            if (tile == null) {
+                tile = downsample(level, key);
+                save(level, key, tile, buildGeneration);
+            }
+            return tile;
+        });
+    }
+
+    // Returns the cached tile without loading it, or null
+    public HeightField getTileIfCached(int level, Point tileKey) {
+        checkLevel(level);
+        return caches[level].getIfPresent(tileKey);
+    }
+
+    // Loads or builds a tile on the worker of its level, see setTileLoadListener
+    public CompletableFuture<HeightField> getTileAsync(int level, Point tileKey, AsyncSectionLoader.Priority priority) {
+        return getTileAsync(level, tileKey, priority, System.nanoTime());
+    }
+
+    // Same with a System.nanoTime() deadline, requests of the same priority are loaded earliest deadline first
+    public CompletableFuture<HeightField> getTileAsync(int level, Point tileKey, AsyncSectionLoader.Priority priority, long deadlineNanos) {
+        checkLevel(level);
+        HeightField cached = caches[level].getIfPresent(tileKey);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loaders[level].request(tileKey, priority, deadlineNanos);
+    }
+
+    // Drops queued prefetches of one level that are no longer wanted
+    public void cancelPrefetches(int level, Predicate<Point> unwanted) {
+        checkLevel(level);
+        loaders[level].cancelPrefetches(unwanted);
+    }
+
+    // Notified on a worker thread with the level and key of every asynchronously requested tile that is ready
+    public void setTileLoadListener(BiConsumer<Integer, Point> listener) {
+        this.listener = listener;
+    }
+
+    // Keeps the tiles of one level in this area cached, e.g. the visible viewport
+    public void pinTiles(int level, Rectangle tileArea) {
+        checkLevel(level);
+        caches[level].pin(tileArea);
+    }
+
+    // Drops the tiles covering a section whose data changed
+    public void invalidateSection(Point sectionKey) {
+        nextGeneration();
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            Point tileKey = tileOf(level, sectionKey);
+            caches[level].invalidate(tileKey);
+            storages[level].remove(tileKey);
+        }
+    }
+
+    public void clearCache() {
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            loaders[level].cancelPending();
+            caches[level].invalidateAll();
+        }
+    }
+
+    // Removes every stored tile, e.g. after the sections were deleted
+    public void deleteAll() {
+        nextGeneration();
+        clearCache();
+        for (int level = 1; level <= MAX_LEVEL; level++) {
+            storages[level].deleteAll();
+        }
+    }
+
+    // Tile of the given level that covers a section
+    public static Point tileOf(int level, Point sectionKey) {
+        return new Point(sectionKey.x >> level, sectionKey.y >> level);
+    }
+
+    // Averages 2x2 samples of each of the four child tiles into one quadrant of the new tile
+    private HeightField downsample(int level, Point tileKey) {
+        int half = size / 2;
+        double[][] heights = new double[size][size]; // [x][y] like generated sections
+        for (int child = 0; child < 4; child++) {
+            int childX = child & 1;
+            int childY = child >> 1;
+            HeightField source = getTile(level - 1, new Point(tileKey.x * 2 + childX, tileKey.y * 2 + childY));
+            for (int x = 0; x < half; x++) {
+                for (int y = 0; y < half; y++) {
+                    double sum = 0;
+                    if (source != null) {
+                        sum = source.get(2 * x, 2 * y) + source.get(2 * x + 1, 2 * y)
+                                + source.get(2 * x, 2 * y + 1) + source.get(2 * x + 1, 2 * y + 1);
+                    }
+                    heights[childX * half + x][childY * half + y] = sum / 4;
+                }
+            }
+        }
+        // Only drawn, so 16-bit heights are plenty
+        return QuantizedHeightField.of(heights);
+    }
+
+    // Saves a built tile unless tiles were dropped since the build started, it may have read the old sections.
+    // Holding the lock keeps a drop from passing between the check and the save.
+    private synchronized void save(int level, Point tileKey, HeightField tile, long buildGeneration) {
+        if (generation == buildGeneration) storages[level].save(tileKey, tile);
+    }
+
+    private synchronized long getGeneration() {
+        return generation;
+    }
+
+    private synchronized void nextGeneration() {
+        generation++;
+    }
+
+    private static void checkLevel(int level) {
+        if (level < 1 || level > MAX_LEVEL) throw new IllegalArgumentException("No pyramid level " + level);
+    }
+}
@@ -0,0 +1,27 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.awt.*;
+
+// Persistent backend behind SectionManager, implementations report I/O errors and return null instead of throwing
+public interface SectionStorage {
+
+    // Returns the stored section or null if it was never saved
+    HeightField load(Point sectionKey);
+
+    void save(Point sectionKey, HeightField sectionData);
+
+    void remove(Point sectionKey);
+
+    // Removes every stored section
+    void deleteAll();
+
+    // Writes pending data to disk
+    default void flush() {
+    }
+
+    // Storage for the downsampled tiles of a SectionPyramid level (1 and up), keyed by tile.
+    // Backends that do not keep them get a transient one, the tiles are then rebuilt from the sections.
+    default SectionStorage levelStorage(int level) {
+        return new TransientSectionStorage();
+    }
+}
@@ -0,0 +1,71 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Thread-safe counters of the work behind section cache misses: storage reads and writes and terrain generation
+public class StorageMetrics {
+    private final LongAdder diskLoads = new LongAdder(); // Reads that found a stored section
+    private final LongAdder diskMisses = new LongAdder(); // Reads that found nothing
+    private final LongAdder diskLoadNanos = new LongAdder();
+    private final LongAdder diskSaves = new LongAdder();
+    private final LongAdder diskSaveNanos = new LongAdder();
+    private final LongAdder generations = new LongAdder();
+    private final LongAdder generationNanos = new LongAdder();
+
+    public void recordLoad(boolean found, long nanos) {
+        (found ? diskLoads : diskMisses).increment();
+        diskLoadNanos.add(nanos);
+    }
+
+    public void recordSave(long nanos) {
+        diskSaves.increment();
+        diskSaveNanos.add(nanos);
+    }
+
+    public void recordGeneration(long nanos) {
+        generations.increment();
+        generationNanos.add(nanos);
+    }
+
+    public long getDiskLoadCount() {
+        return diskLoads.sum();
+    }
+
+    public long getDiskMissCount() {
+        return diskMisses.sum();
+    }
+
+    public long getTotalDiskLoadNanos() {
+        return diskLoadNanos.sum();
+    }
+
+    // Sections written to storage
+    public long getDiskSaveCount() {
+        return diskSaves.sum();
+    }
+
+    public long getTotalDiskSaveNanos() {
+        return diskSaveNanos.sum();
+    }
+
+    public long getGenerationCount() {
+        return generations.sum();
+    }
+
+    public long getTotalGenerationNanos() {
+        return generationNanos.sum();
+    }
+
+    @Override
+    public String toString() {
+        long reads = getDiskLoadCount() + getDiskMissCount();
+        return String.format("StorageMetrics[loads=%d, misses=%d, avgRead=%.3f ms, saves=%d, avgSave=%.3f ms, generated=%d, avgGenerate=%.3f ms]",
+                getDiskLoadCount(), getDiskMissCount(), average(getTotalDiskLoadNanos(), reads),
+                getDiskSaveCount(), average(getTotalDiskSaveNanos(), getDiskSaveCount()),
+                getGenerationCount(), average(getTotalGenerationNanos(), getGenerationCount()));
+    }
+
+    private static double average(long nanos, long count) {
+        return count == 0 ? 0 : nanos / 1e6 / count;
+    }
+}
@@ -0,0 +1,25 @@
+package de.tjorven.pathfinder.gui.section;
+
+import java.awt.*;
+
+// Stores nothing, sections evicted from the cache are generated again from the world seed.
+// Trades disk space and I/O for generation time.
+public class TransientSectionStorage implements SectionStorage {
+
+    @Override
+    public HeightField load(Point sectionKey) {
+        return null;
+    }
+
+    @Override
+    public void save(Point sectionKey, HeightField sectionData) {
+    }
+
+    @Override
+    public void remove(Point sectionKey) {
+    }
+
+    @Override
+    public void deleteAll() {
+    }
+}
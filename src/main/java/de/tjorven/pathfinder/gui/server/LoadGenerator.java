@@ -0,0 +1,194 @@
+package de.tjorven.pathfinder.gui.server;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.gui.map.PerlinMap;
+import de.tjorven.pathfinder.gui.gui.map.SectionHeightLookup;
+import de.tjorven.pathfinder.gui.section.TransientSectionStorage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Replays a seeded workload of path queries against a PathServer and reports throughput and latency percentiles.
+// Start and goal are land tiles of the server's terrain (seed and window from /info) at most --max-distance apart,
+// so the same --seed replays the same queries. Heights come from sections generated locally from that seed, the
+// terrain the server routes on as long as its stored sections were not edited. Each client sends its next query
+// as soon as the previous one is answered, a closed loop, so throughput is what the server sustains at that concurrency.
+// Options: --url http://127.0.0.1:8080 --queries 1000 --warmup 100 --concurrency 4 --seed 1 --max-distance 200 --mode ASTAR
+// Without --url a server is started in this process on a free port, configured by the ServerMain options.
+public class LoadGenerator {
+    private static final double MIN_LAND_HEIGHT = 5; // Like the pathfinder's random points
+    private static final int MAX_SAMPLES = 1000; // Tries per endpoint before settling for water
+    private static final long TERRAIN_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final Pattern NUMBER_FIELD = Pattern.compile("\"(\\w+)\":(-?\\d+)");
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final String baseUrl;
+
+    private LoadGenerator(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Options options = Options.parse(args);
+        int queryCount = options.getInt("queries", 1000);
+        int warmup = options.getInt("warmup", 100);
+        int concurrency = options.getInt("concurrency", 4);
+        int maxDistance = options.getInt("max-distance", 200);
+        String mode = options.get("mode", "ASTAR");
+        if (queryCount <= 0 || warmup < 0 || concurrency <= 0 || maxDistance <= 0) {
+            throw new IllegalArgumentException("--queries, --concurrency and --max-distance must be positive");
+        }
+
+        PathServer embedded = null;
+        String url;
+        if (options.has("url")) {
+            url = options.get("url", null);
+        } else {
+            embedded = ServerMain.start(options, 0);
+            url = "http://127.0.0.1:" + embedded.getAddress().getPort();
+        }
+        try {
+            LoadGenerator generator = new LoadGenerator(url.endsWith("/") ? url.substring(0, url.length() - 1) : url);
+            String info = generator.get("/info").body();
+            long terrainSeed = field(info, "seed");
+            int width = (int) field(info, "width");
+            int height = (int) field(info, "height");
+
+            Random random = new Random(options.getLong("seed", 1));
+            SectionHeightLookup terrain = new SectionHeightLookup(
+                    new SectionManager(new PerlinMap(terrainSeed), new TransientSectionStorage(), TERRAIN_CACHE_BYTES));
+            String[] warmupQueries = generator.workload(random, terrain, width, height, maxDistance, mode, warmup);
+            String[] queries = generator.workload(random, terrain, width, height, maxDistance, mode, queryCount);
+
+            generator.run(warmupQueries, concurrency);
+            Report report = generator.run(queries, concurrency);
+            System.out.printf(Locale.ROOT, "%d queries, %d clients, mode %s, max distance %d%n", queryCount, concurrency, mode, maxDistance);
+            System.out.println(report);
+        } finally {
+            if (embedded != null) embedded.close();
+        }
+    }
+
+    // Request paths of the queries, endpoints drawn from the random generator
+    private String[] workload(Random random, SectionHeightLookup terrain, int width, int height, int maxDistance, String mode, int count) {
+        String[] queries = new String[count];
+        for (int i = 0; i < count; i++) {
+            int[] start = landTile(random, terrain, 0, 0, width, height);
+            int[] goal = landTile(random, terrain, Math.max(0, start[0] - maxDistance), Math.max(0, start[1] - maxDistance),
+                    Math.min(width, start[0] + maxDistance + 1), Math.min(height, start[1] + maxDistance + 1));
+            queries[i] = "/path?sx=" + start[0] + "&sy=" + start[1] + "&gx=" + goal[0] + "&gy=" + goal[1] + "&mode=" + mode;
+        }
+        return queries;
+    }
+
+    // A random tile of the area that lies on land, or the last sample if none was found
+    private static int[] landTile(Random random, SectionHeightLookup terrain, int minX, int minY, int maxX, int maxY) {
+        int[] tile = new int[2];
+        for (int attempt = 0; attempt < MAX_SAMPLES; attempt++) {
+            tile[0] = minX + random.nextInt(maxX - minX);
+            tile[1] = minY + random.nextInt(maxY - minY);
+            if (terrain.getHeightAt(tile[0], tile[1]) >= MIN_LAND_HEIGHT) break;
+        }
+        return tile;
+    }
+
+    private Report run(String[] queries, int concurrency) throws InterruptedException {
+        long[] latencies = new long[queries.length];
+        AtomicInteger next = new AtomicInteger();
+        LongAdder found = new LongAdder();
+        LongAdder notFound = new LongAdder();
+        LongAdder failed = new LongAdder();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long begin = System.nanoTime();
+        for (int client = 0; client < concurrency; client++) {
+            clients.execute(() -> {
+                for (int i = next.getAndIncrement(); i < queries.length; i = next.getAndIncrement()) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = get(queries[i]);
+                        if (response.statusCode() != 200) {
+                            failed.increment();
+                        } else if (response.body().startsWith("{\"found\":true")) {
+                            found.increment();
+                        } else {
+                            notFound.increment();
+                        }
+                    } catch (IOException e) {
+                        failed.increment();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    latencies[i] = System.nanoTime() - start;
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        long elapsed = System.nanoTime() - begin;
+        Arrays.sort(latencies);
+        return new Report(latencies, elapsed, found.sum(), notFound.sum(), failed.sum());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static long field(String json, String name) {
+        Matcher matcher = NUMBER_FIELD.matcher(json);
+        while (matcher.find()) {
+            if (matcher.group(1).equals(name)) return Long.parseLong(matcher.group(2));
+        }
+        throw new IllegalStateException("No " + name + " in server info " + json);
+    }
+
+    private static final class Report {
+        private final long[] sortedLatencies;
+        private final long elapsedNanos;
+        private final long found;
+        private final long notFound;
+        private final long failed;
+
+        private Report(long[] sortedLatencies, long elapsedNanos, long found, long notFound, long failed) {
+            this.sortedLatencies = sortedLatencies;
+            this.elapsedNanos = elapsedNanos;
+            this.found = found;
+            this.notFound = notFound;
+            this.failed = failed;
+        }
+
+        // Nearest rank
+        private double percentileMillis(double percentile) {
+            int rank = (int) Math.ceil(percentile / 100 * sortedLatencies.length);
+            return sortedLatencies[Math.max(0, rank - 1)] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            return String.format(Locale.ROOT, "Throughput: %.1f queries/s over %.2f s (%d found, %d not found, %d failed)%n"
+                            + "Latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f",
+                    sortedLatencies.length / seconds, seconds, found, notFound, failed,
+                    percentileMillis(50), percentileMillis(90), percentileMillis(99), percentileMillis(100));
+        }
+    }
+}
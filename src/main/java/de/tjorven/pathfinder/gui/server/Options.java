@@ -0,0 +1,54 @@
+package de.tjorven.pathfinder.gui.server;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+// "--name value" pairs of the headless command line entry points
+final class Options {
+    private final Map<String, String> values = new HashMap<>();
+
+    static Options parse(String[] args) {
+        Options options = new Options();
+        for (int i = 0; i < args.length; i += 2) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --name value, got " + args[i]);
+            }
+            options.values.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    boolean has(String name) {
+        return values.containsKey(name);
+    }
+
+    String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    int getInt(String name, int defaultValue) {
+        String value = values.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number, was " + value);
+        }
+    }
+
+    long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        if (value == null) return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("--" + name + " must be a number, was " + value);
+        }
+    }
+
+    File getFile(String name, File defaultValue) {
+        String value = values.get(name);
+        return value != null ? new File(value) : defaultValue;
+    }
+}
@@ -0,0 +1,237 @@
+package de.tjorven.pathfinder.gui.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.gui.map.PathQueryService;
+import de.tjorven.pathfinder.gui.gui.map.search.CompactPath;
+import de.tjorven.pathfinder.gui.gui.map.search.NodeTable;
+import de.tjorven.pathfinder.gui.gui.map.search.SearchMode;
+import de.tjorven.pathfinder.gui.gui.map.search.SearchResult;
+
+import java.awt.*;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Answers path queries over HTTP without any UI, meant for the loopback interface.
+//   GET /path?sx=&sy=&gx=&gy=[&mode=ASTAR][&format=json|binary]  route between two tiles of the search window
+//   GET /info   search window and terrain seed, for clients that generate their own queries
+//   GET /stats  request counters and section cache state
+// Requests run on a fixed pool of platform threads. A query is CPU-bound and each thread keeps its own
+// MapPathfinder through the PathQueryService, so threads beyond the core count only add search buffers.
+// The binary format is the CompactPath encoding, about half a byte per tile.
+public class PathServer implements AutoCloseable {
+    private final SectionManager sectionManager;
+    private final PathQueryService queries;
+    private final long seed;
+    private final int maxSearchRadius;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final LongAdder foundPaths = new LongAdder();
+    private final LongAdder missingPaths = new LongAdder();
+    private final LongAdder badRequests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder searchNanos = new LongAdder();
+    private final LongAdder expandedNodes = new LongAdder();
+
+    // The seed is only reported by /info, the sections come from the SectionManager
+    public PathServer(SectionManager sectionManager, long seed, int maxSearchRadius, InetSocketAddress address, int threads) throws IOException {
+        this.sectionManager = sectionManager;
+        this.queries = new PathQueryService(sectionManager, maxSearchRadius, threads);
+        this.seed = seed;
+        this.maxSearchRadius = maxSearchRadius;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "path-server-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/path", exchange -> handle(exchange, this::handlePath));
+        server.createContext("/info", exchange -> handle(exchange, this::handleInfo));
+        server.createContext("/stats", exchange -> handle(exchange, this::handleStats));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    // The bound address, with the actual port if the server was created on port 0
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        queries.close();
+    }
+
+    private void handlePath(HttpExchange exchange) throws IOException {
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        Point start;
+        Point goal;
+        SearchMode mode;
+        boolean binary;
+        try {
+            start = new Point(coordinate(params, "sx"), coordinate(params, "sy"));
+            goal = new Point(coordinate(params, "gx"), coordinate(params, "gy"));
+            mode = SearchMode.valueOf(params.getOrDefault("mode", "ASTAR").toUpperCase(Locale.ROOT));
+            String format = params.getOrDefault("format", "json");
+            if (!format.equals("json") && !format.equals("binary")) {
+                throw new IllegalArgumentException("Unknown format " + format);
+            }
+            binary = format.equals("binary");
+        } catch (IllegalArgumentException e) {
+            badRequests.increment();
+            send(exchange, 400, "text/plain", e.getMessage());
+            return;
+        }
+
+        long begin = System.nanoTime();
+        SearchResult result = queries.search(start, goal, mode);
+        long nanos = System.nanoTime() - begin;
+        searchNanos.add(nanos);
+        expandedNodes.add(result.getExpandedNodes());
+        CompactPath path = result.getPath() != null ? CompactPath.of(result.getPath()) : null;
+        if (path != null) {
+            foundPaths.increment();
+        } else {
+            missingPaths.increment();
+        }
+
+        exchange.getResponseHeaders().set("X-Expanded-Nodes", Long.toString(result.getExpandedNodes()));
+        exchange.getResponseHeaders().set("X-Search-Micros", Long.toString(nanos / 1000));
+        if (binary) {
+            if (path == null) {
+                send(exchange, 404, "application/octet-stream", new byte[0]);
+                return;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + path.length() / 2);
+            path.writeTo(new DataOutputStream(bytes));
+            send(exchange, 200, "application/octet-stream", bytes.toByteArray());
+            return;
+        }
+
+        // Run-length waypoints, a client walks the straight runs between them
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"found\":").append(path != null)
+                .append(",\"complete\":").append(result.isComplete())
+                .append(",\"bound\":").append(Double.isInfinite(result.getSuboptimalityBound()) ? "null" : result.getSuboptimalityBound())
+                .append(",\"expanded\":").append(result.getExpandedNodes())
+                .append(",\"searchMicros\":").append(nanos / 1000);
+        if (path != null) {
+            json.append(",\"length\":").append(path.length()).append(",\"waypoints\":[");
+            long[] waypoints = path.waypoints();
+            for (int i = 0; i < waypoints.length; i++) {
+                if (i > 0) json.append(',');
+                json.append('[').append(NodeTable.unpackX(waypoints[i])).append(',').append(NodeTable.unpackY(waypoints[i])).append(']');
+            }
+            json.append(']');
+        }
+        json.append('}');
+        send(exchange, 200, "application/json", json.toString());
+    }
+
+    private void handleInfo(HttpExchange exchange) throws IOException {
+        int size = maxSearchRadius * 2;
+        send(exchange, 200, "application/json", "{\"seed\":" + seed + ",\"width\":" + size + ",\"height\":" + size
+                + ",\"sectionSize\":" + SectionManager.SECTION_SIZE + "}");
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        long searches = foundPaths.sum() + missingPaths.sum();
+        send(exchange, 200, "application/json", "{\"found\":" + foundPaths.sum()
+                + ",\"notFound\":" + missingPaths.sum()
+                + ",\"badRequests\":" + badRequests.sum()
+                + ",\"failures\":" + failures.sum()
+                + ",\"expandedNodes\":" + expandedNodes.sum()
+                + ",\"meanSearchMicros\":" + (searches == 0 ? 0 : searchNanos.sum() / searches / 1000)
+                + ",\"cachedSections\":" + sectionManager.getSectionCache().size()
+                + ",\"cachedSectionBytes\":" + sectionManager.getSectionCache().getWeightBytes() + "}");
+    }
+
+    // Common handling: GET only, a failing handler answers 500, the exchange is always closed
+    private void handle(HttpExchange exchange, HttpHandler handler) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                send(exchange, 405, "text/plain", "Only GET is supported");
+                return;
+            }
+            handler.handle(exchange);
+        } catch (RuntimeException e) {
+            failures.increment();
+            e.printStackTrace();
+            // The response may have been started already, then the client sees a broken connection instead
+            try {
+                send(exchange, 500, "text/plain", String.valueOf(e));
+            } catch (IOException | RuntimeException ignored) {
+            }
+        }
+    }
+
+    // Tile coordinate inside the search window [0, 2 * maxSearchRadius)
+    private int coordinate(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) throw new IllegalArgumentException("Missing parameter " + name);
+        int coordinate;
+        try {
+            coordinate = Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " must be an integer, was " + value);
+        }
+        if (coordinate < 0 || coordinate >= maxSearchRadius * 2) {
+            throw new IllegalArgumentException(name + " must be in [0, " + maxSearchRadius * 2 + "), was " + coordinate);
+        }
+        return coordinate;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        send(exchange, status, contentType + "; charset=utf-8", body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length > 0) {
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
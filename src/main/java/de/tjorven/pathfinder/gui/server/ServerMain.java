@@ -0,0 +1,39 @@
+package de.tjorven.pathfinder.gui.server;
+
+import de.tjorven.pathfinder.gui.SectionManager;
+import de.tjorven.pathfinder.gui.gui.map.PerlinMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+// Headless entry point, serves path queries over HTTP without opening a window (see PathServer).
+// Options: --port 8080 --bind 127.0.0.1 --radius 1000 --threads <cores> --map-dir map-data
+public class ServerMain {
+    static final int DEFAULT_PORT = 8080;
+    static final int DEFAULT_RADIUS = 1000; // Same search window as the GUI
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true"); // Points and rectangles only, never a display
+        Options options = Options.parse(args);
+        PathServer server = start(options, options.getInt("port", DEFAULT_PORT));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close, "path-server-shutdown"));
+        InetSocketAddress address = server.getAddress();
+        System.out.println("Serving paths on http://" + address.getHostString() + ":" + address.getPort() + "/path");
+    }
+
+    // Builds the sections and the server from the options shared with LoadGenerator and starts it
+    static PathServer start(Options options, int port) throws IOException {
+        File mapDirectory = options.getFile("map-dir", SectionManager.DEFAULT_MAP_DIRECTORY);
+        int radius = options.getInt("radius", DEFAULT_RADIUS);
+        int threads = options.getInt("threads", Runtime.getRuntime().availableProcessors());
+        if (radius <= 0 || threads <= 0) throw new IllegalArgumentException("--radius and --threads must be positive");
+
+        long seed = SectionManager.loadOrCreateSeed(mapDirectory);
+        SectionManager sectionManager = new SectionManager(new PerlinMap(seed), mapDirectory);
+        PathServer server = new PathServer(sectionManager, seed, radius,
+                new InetSocketAddress(options.get("bind", "127.0.0.1"), port), threads);
+        server.start();
+        return server;
+    }
+}